@@ -0,0 +1,305 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+import java.io.* ;
+
+/**
+ * A BatchSolver solves a stream of puzzles on several worker threads.
+ * Each worker owns its own strategy and solver, since strategies hold
+ * their working state in member arrays and can't be shared. The puzzles
+ * are held in a ring of reusable grids, each of which is tagged with its
+ * sequence number, so that the results are written in input order
+ * regardless of the order in which the workers finish.
+ */
+
+public class BatchSolver {
+
+    PuzzleReader reader ;
+
+    PrintWriter output ;
+
+    String strategyLabel ;
+
+    int maxSolns ,
+        nThreads ,
+        window ;
+
+    long timeLimit ,
+         ruleTimeLimit ;
+
+    boolean profile ,
+            useUndoLog ,
+            adaptiveScheduling ;
+
+    // Ring of puzzles awaiting solution or output.
+
+    Grid[] grids ;
+
+    String[] results ;
+
+    boolean[] isValid ,
+              isSolved ;
+
+    transient int nRead ,
+                  nTaken ,
+                  nWritten ;
+
+    transient boolean allRead ;
+
+    /**
+     * Creates a BatchSolver instance.
+     * @param reader source of puzzles
+     * @param output destination for results
+     * @param strategyLabel name of the strategy to be used by each worker
+     * @param maxSolns the maximum number of solutions to find for each puzzle (0 for no limit)
+     * @param nThreads number of worker threads
+     * @param profile whether unwinds and complexity should be reported
+     * @param timeLimit time limit for each puzzle in milliseconds (0 for no limit)
+     */
+
+    public BatchSolver( PuzzleReader reader ,
+                        PrintWriter output ,
+                        String strategyLabel ,
+                        int maxSolns ,
+                        int nThreads ,
+                        boolean profile ,
+                        long timeLimit ){
+        this.reader = reader ;
+        this.output = output ;
+        this.strategyLabel = strategyLabel ;
+        this.maxSolns = maxSolns ;
+        this.nThreads = nThreads ;
+        this.profile = profile ;
+        this.timeLimit = timeLimit ;
+
+        window = 64 * nThreads ;
+
+        grids = new Grid[window];
+        results = new String[window];
+        isValid = new boolean[window];
+        isSolved = new boolean[window];
+
+        int i = 0 ;
+        while( i < window ){
+            grids[i++] = new Grid();
+        }
+    }
+
+    /**
+     * Sets the time limit for each application of an elimination rule by
+     * the workers' strategies, where they are Least Candidates Hybrid.
+     * @param ruleTimeLimit time limit in milliseconds (0 for no limit)
+     * @see LeastCandidatesHybrid#setRuleTimeLimit(long)
+     */
+
+    public void setRuleTimeLimit( long ruleTimeLimit ){
+        this.ruleTimeLimit = ruleTimeLimit ;
+    }
+
+    /**
+     * Chooses whether the state grids of the workers' strategies should
+     * use an undo log rather than snapshots.
+     * @param useUndoLog whether an undo log should be used
+     * @see StrategyBase#setUndoLog(boolean)
+     */
+
+    public void setUndoLog( boolean useUndoLog ){
+        this.useUndoLog = useUndoLog ;
+    }
+
+    /**
+     * Determines whether the workers' strategies, where they are Least
+     * Candidates Hybrid, should reorder their elimination rules by their
+     * measured yields.
+     * @param adaptiveScheduling whether the rules should be reordered
+     * @see LeastCandidatesHybrid#setAdaptiveScheduling(boolean)
+     */
+
+    public void setAdaptiveScheduling( boolean adaptiveScheduling ){
+        this.adaptiveScheduling = adaptiveScheduling ;
+    }
+
+    /**
+     * Reads and solves every puzzle in the stream. The call returns once
+     * all of the results have been written.
+     * @return the number of puzzles read
+     */
+
+    public int solve() throws InterruptedException {
+
+        nRead = nTaken = nWritten = 0 ;
+        allRead = false ;
+
+        Worker[] workers = new Worker[nThreads];
+        int i = 0 ;
+        while( i < nThreads ){
+            workers[i] = new Worker("BatchSolver-" + i );
+            workers[i].start();
+            ++ i ;
+        }
+        int slot ;
+        boolean valid ;
+        while( true ){
+            slot = waitForSlot();
+            try {
+                if( ! reader.read( grids[slot] ) ){
+                    break ;
+                }
+                valid = true ;
+            } catch ( Exception e ) {
+                System.err.println("Puzzle " + reader.getNumberOfPuzzles() + ": " + e.getMessage() );
+                valid = false ;
+            }
+            publish( slot , valid );
+        }
+        finishReading();
+        i = 0 ;
+        while( i < nThreads ){
+            workers[i++].join();
+        }
+        output.flush();
+
+        return reader.getNumberOfPuzzles();
+    }
+
+    /**
+     * Waits until the ring contains a free slot, which is returned.
+     */
+
+    synchronized int waitForSlot() throws InterruptedException {
+        while( nRead - nWritten == window ){
+            wait();
+        }
+        return nRead % window ;
+    }
+
+    /**
+     * Makes the most recently-read puzzle available to the workers.
+     */
+
+    synchronized void publish( int slot , boolean valid ){
+        isValid[slot] = valid ;
+        isSolved[slot] = false ;
+        ++ nRead ;
+        notifyAll();
+    }
+
+    /**
+     * Notifies the workers that no more puzzles will be published.
+     */
+
+    synchronized void finishReading(){
+        allRead = true ;
+        notifyAll();
+    }
+
+    /**
+     * Returns the sequence number of the next puzzle to be solved
+     * or -1 if no puzzles remain.
+     */
+
+    synchronized int take() throws InterruptedException {
+        while( nTaken == nRead && ! allRead ){
+            wait();
+        }
+        if( nTaken == nRead ){
+            return -1 ;
+        }
+        return nTaken ++ ;
+    }
+
+    /**
+     * Records the result for the given puzzle and writes out any results
+     * that are now contiguous with those that have already been written.
+     */
+
+    synchronized void complete( int serial , String result ){
+        int slot = serial % window ;
+        results[slot] = result ;
+        isSolved[slot] = true ;
+        while( nWritten < nRead && isSolved[ slot = nWritten % window ] ){
+            if( results[slot] instanceof String ){
+                output.println( results[slot] );
+            }
+            results[slot] = null ;
+            isSolved[slot] = false ;
+            ++ nWritten ;
+        }
+        notifyAll();
+    }
+
+    /**
+     * A Worker solves puzzles with its own strategy until the
+     * stream has been exhausted.
+     */
+
+    class Worker extends Thread {
+
+        IStrategy strategy ;
+
+        Solver solver ;
+
+        Worker( String threadName ){
+            super( threadName );
+            strategy = Strategy.create( strategyLabel , false );
+            if( strategy instanceof LeastCandidatesHybrid ){
+                ( (LeastCandidatesHybrid) strategy ).setRuleTimeLimit( ruleTimeLimit );
+                ( (LeastCandidatesHybrid) strategy ).setAdaptiveScheduling( adaptiveScheduling );
+            }
+            if( strategy instanceof StrategyBase ){
+                ( (StrategyBase) strategy ).setUndoLog( useUndoLog );
+            }
+            solver = new Solver( null , strategy , null , 0 , maxSolns , null );
+            solver.solution = new Grid();
+            solver.timeLimit = timeLimit ;
+        }
+
+        public void run(){
+            int serial , slot , nSolns ;
+            String result ;
+            try {
+                while( ( serial = take() ) >= 0 ){
+                    slot = serial % window ;
+                    if( isValid[slot] ){
+                        solver.grid = grids[slot];
+                        try {
+                            nSolns = solver.solve( strategy , null , 0 , maxSolns , true , 0 , Integer.MAX_VALUE );
+                        } catch ( Exception e ) {
+                            System.err.println("Puzzle " + ( 1 + serial ) + ": " + e.getMessage() );
+                            nSolns = 0 ;
+                        }
+                        result = Solver.formatResult( 1 + serial , nSolns , solver , profile );
+                    } else {
+                        result = Solver.formatError( 1 + serial , profile );
+                    }
+                    complete( serial , result );
+                }
+            } catch ( InterruptedException e ) {
+            }
+        }
+    }
+}
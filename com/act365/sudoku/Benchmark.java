@@ -0,0 +1,649 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+import com.act365.sudoku.masks.* ;
+
+import java.io.* ;
+import java.text.* ;
+import java.util.* ;
+
+/**
+ * Benchmark times the solver's main operations so that the effect of
+ * a change can be measured. Each benchmark is run once to warm up the
+ * virtual machine and then for a number of timed repetitions, of which
+ * the best is reported. The benchmarks cover:
+ * <br>- each strategy from <code>Strategy.create()</code> on a set of puzzle corpora,
+ * <br>- the memory allocated by each strategy once it has been warmed up,
+ * <br>- the <code>addMove()</code>, <code>pushState()</code> and <code>popState()</code> operations on CellState,
+ * <br>- the chain-based rules of Least Candidates Hybrid II on puzzles that need them,
+ * <br>- the iteration rate of <code>MaskFactory.nextElement()</code>,
+ * <br>- the number of puzzles per second produced by the Composer and
+ * <br>- the uniqueness of the puzzle identifiers printed by GridKey.
+ */
+
+public class Benchmark {
+
+    // Built-in corpora - puzzles that only need singles, puzzles on which
+    // Least Candidates Hybrid unwinds most often and 4x4-box puzzles.
+
+    final static String[] corpusNames = { "easy" , "hard" , "4x4" };
+
+    final static String[][] corpora = {
+        { "..............7.59..3.4.......9.6.....1...3...8.......9......67..4.3........1...8" ,
+          "..............1.48..5.7.......8.9.....3...5...6.......8......91..7.5........3...6" ,
+          "..............3.74..6.8.......4.5.....2...6...9.......4......53..8.6........2...9" ,
+          "..............4.39..6.8.......9.2.....1...6...7.......9......24..8.6........1...7" } ,
+        { "97...6.........1.48...........3..2..6......9...........342.........8..7...21....." ,
+          "74...6.........3.25...........1..9..6......7...........129.........5..4...93....." ,
+          "79...6.........3.18...........2..4..6......7...........214.........8..9...43....." ,
+          "82...5.........3.76...........4..1..5......8...........471.........6..2...13....." } ,
+        { "..B.D4.12.F.3..8..7.2...39A85...2...39A.5C...4..3...5CB.D47.2GF6..E...12GF6...85..12G.6.9..5..E...639A..CB.D.71..A8..BE.4.12..6.B...7..GF..9...C..2.F.3.A.5...D.F..9..5.B.D471......BE........39E..7.2GF6.9A.5.B1...639.85C.E.4.6.9..5C...4712..85CBED4.12G...9A" ,
+          "C2..39F..E..1GB.......7.1G.DC2.46.7......2...9..1G..C25..9F86E7..5.3....E..1G...9.86E.A1..D.2..3E7A1GBD.2.4.9...G..C..439....7A15...F.6E.A1.BD..F86E7..G.DC.5..9.A..B...5....86E...2..3..8.E7....39F8....1GB.C.5.6E7..G.DC25..9FA....C25..9F.6...C.....F.6..A..B" } };
+
+    // Puzzles that Least Candidates Hybrid II can only solve with chains
+    // (AI Escargot and Easter Monster).
+
+    final static String[] chainCorpus = { "1....7.9..3..2...8..96..5....53..9...1..8...26....4...3......1..4......7..7...3.." ,
+                                          "1.......2.9.4...5...6...7...5.9.3.......7.......85..4.7.....6...3...9.8...2.....1" };
+
+    // The number of times the allocation check solves its corpora before
+    // it starts to count.
+
+    final static int WARM_UP_PASSES = 2 ;
+
+    int repetitions ;
+
+    PrintStream output ;
+
+    DecimalFormat format ;
+
+    /**
+     * Creates a Benchmark instance.
+     * @param repetitions number of timed repetitions of each benchmark
+     * @param output destination for the results
+     */
+
+    public Benchmark( int repetitions , PrintStream output ){
+        this.repetitions = repetitions ;
+        this.output = output ;
+        format = new DecimalFormat("#0.000");
+    }
+
+    /**
+     * Times a strategy on a corpus. Every puzzle is solved as far as
+     * the second solution, as it would be when checked for uniqueness.
+     * @param strategyLabel name of the strategy
+     * @param corpusName name of the corpus
+     * @param puzzles puzzles in the format created by <code>Grid.toLine()</code>
+     * @param maxUnwinds maximum permitted number of unwinds per puzzle (0 for no limit)
+     */
+
+    public void strategy( String strategyLabel , String corpusName , String[] puzzles , int maxUnwinds ) throws Exception {
+        IStrategy strategy = Strategy.create( strategyLabel , false );
+        if( strategy == null ){
+            throw new Exception("Unknown strategy: " + strategyLabel );
+        }
+        Grid grid = new Grid();
+        Solver solver = new Solver( grid , strategy , null , 0 , 2 , null );
+        long best = Long.MAX_VALUE , start , elapsed ;
+        int i , j , nUnwinds = 0 ;
+        i = 0 ;
+        while( i <= repetitions ){
+            nUnwinds = 0 ;
+            start = System.nanoTime();
+            j = 0 ;
+            while( j < puzzles.length ){
+                grid.populateLine( puzzles[j] );
+                solver.solve( strategy , null , 0 , 2 , true , maxUnwinds , Integer.MAX_VALUE );
+                nUnwinds += solver.getNumberOfUnwinds();
+                ++ j ;
+            }
+            elapsed = System.nanoTime() - start ;
+            // The first run is a warm-up.
+            if( i > 0 && elapsed < best ){
+                best = elapsed ;
+            }
+            ++ i ;
+        }
+        report( strategyLabel + " [" + corpusName + "]" , best , puzzles.length , "puzzle" , "unwinds=" + nUnwinds );
+    }
+
+    /**
+     * Times the chain-based rules of Least Candidates Hybrid II, i.e.
+     * Single-Valued Chains, Many-Valued Chains and Nishio, which build
+     * their chain tables afresh on each call. The time for the corpus is
+     * divided by the number of calls made to the three rules, which
+     * dominate the solution of puzzles that need them, to give the cost
+     * per step.
+     * @param corpusName name of the corpus
+     * @param puzzles puzzles in the format created by <code>Grid.toLine()</code>
+     * @param maxUnwinds maximum permitted number of unwinds per puzzle (0 for no limit)
+     */
+
+    public void chains( String corpusName , String[] puzzles , int maxUnwinds ) throws Exception {
+        LeastCandidatesHybrid strategy = (LeastCandidatesHybrid) Strategy.create( Strategy.strategyNames[Strategy.LEAST_CANDIDATES_HYBRID_II] , false );
+        Grid grid = new Grid();
+        Solver solver = new Solver( grid , strategy , null , 0 , 2 , null );
+        long best = Long.MAX_VALUE , start , elapsed ;
+        int i , j , nCalls = 0 , nEliminations = 0 ;
+        i = 0 ;
+        while( i <= repetitions ){
+            nCalls = nEliminations = 0 ;
+            start = System.nanoTime();
+            j = 0 ;
+            while( j < puzzles.length ){
+                grid.populateLine( puzzles[j] );
+                solver.solve( strategy , null , 0 , 2 , true , maxUnwinds , Integer.MAX_VALUE );
+                nCalls += strategy.singleValuedChainsCalls + strategy.manyValuedChainsCalls + strategy.nishioCalls ;
+                nEliminations += strategy.singleValuedChainsEliminations + strategy.manyValuedChainsEliminations + strategy.nishioEliminations ;
+                ++ j ;
+            }
+            elapsed = System.nanoTime() - start ;
+            if( i > 0 && elapsed < best ){
+                best = elapsed ;
+            }
+            ++ i ;
+        }
+        report( "Chain rules [" + corpusName + "]" , best , nCalls , "step" , "eliminations=" + nEliminations );
+    }
+
+    /**
+     * Measures the memory allocated by a strategy in its steady state as
+     * it solves each of a set of corpora. Each corpus has an instance of
+     * the strategy to itself, since a strategy reallocates its state
+     * whenever the grid size changes. The whole set is solved
+     * WARM_UP_PASSES times before any count is made, so that every
+     * instance has sized its buffers and the virtual machine has compiled
+     * every path that the set exercises. A strategy that doesn't explain
+     * its reasoning shouldn't then allocate anything, so any allocation
+     * is reported as a failure. The lowest count from the repetitions is
+     * reported for each corpus. The count relies upon the HotSpot
+     * extension to ThreadMXBean.
+     * @param strategyLabel name of the strategy
+     * @param corpusNames names of the corpora
+     * @param corpora puzzles in the format created by <code>Grid.toLine()</code>
+     * @param maxUnwinds maximum permitted number of unwinds per puzzle (0 for no limit)
+     * @return whether the strategy allocated memory on any corpus
+     */
+
+    public boolean allocation( String strategyLabel , String[] corpusNames , String[][] corpora , int maxUnwinds ) throws Exception {
+        java.lang.management.ThreadMXBean threadMXBean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if( ! ( threadMXBean instanceof com.sun.management.ThreadMXBean ) ){
+            throw new Exception("Allocation counts are not supported by this virtual machine");
+        }
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean ;
+        final long threadId = Thread.currentThread().getId();
+        IStrategy[] strategies = new IStrategy[corpora.length];
+        Grid[] grids = new Grid[corpora.length];
+        Solver[] solvers = new Solver[corpora.length];
+        long[] least = new long[corpora.length];
+        long allocated , start ;
+        int i , j , k ;
+        k = 0 ;
+        while( k < corpora.length ){
+            if( ( strategies[k] = Strategy.create( strategyLabel , false ) ) == null ){
+                throw new Exception("Unknown strategy: " + strategyLabel );
+            }
+            grids[k] = new Grid();
+            solvers[k] = new Solver( grids[k] , strategies[k] , null , 0 , 2 , null );
+            least[k] = Long.MAX_VALUE ;
+            ++ k ;
+        }
+        i = 0 ;
+        while( i < WARM_UP_PASSES + Math.max( 1 , repetitions ) ){
+            k = 0 ;
+            while( k < corpora.length ){
+                allocated = 0 ;
+                j = 0 ;
+                while( j < corpora[k].length ){
+                    // The grid is populated outside the count.
+                    grids[k].populateLine( corpora[k][j] );
+                    start = allocationMXBean.getThreadAllocatedBytes( threadId );
+                    solvers[k].solve( strategies[k] , null , 0 , 2 , true , maxUnwinds , Integer.MAX_VALUE );
+                    allocated += allocationMXBean.getThreadAllocatedBytes( threadId ) - start ;
+                    ++ j ;
+                }
+                if( i >= WARM_UP_PASSES && allocated < least[k] ){
+                    least[k] = allocated ;
+                }
+                ++ k ;
+            }
+            ++ i ;
+        }
+        boolean allocates = false ;
+        k = 0 ;
+        while( k < corpora.length ){
+            output.println( strategyLabel + " [" + corpusNames[k] + "] allocation: " + least[k] + " bytes for " + corpora[k].length + " puzzles" + ( least[k] > 0 ? " - FAIL" : " - OK" ) );
+            allocates |= least[k] > 0 ;
+            ++ k ;
+        }
+        output.flush();
+        return allocates ;
+    }
+
+    /**
+     * Times the CellState operations. Each cycle writes the state to the
+     * thread, adds a move and then, once the grid has been completed,
+     * unwinds the thread move by move.
+     * @param solution completed grid in the format created by <code>Grid.toLine()</code>
+     * @param useUndoLog whether the state should use an undo log
+     * @param cycles number of times the grid should be completed and unwound
+     */
+
+    public void cellState( String solution , boolean useUndoLog , int cycles ) throws Exception {
+        Grid grid = new Grid();
+        grid.populateLine( solution );
+        final int cellsInRow = grid.cellsInRow ,
+                  nCells = cellsInRow * cellsInRow ;
+        CellState state = new CellState( useUndoLog );
+        long best = Long.MAX_VALUE , start , elapsed ;
+        int i , j , k ;
+        i = 0 ;
+        while( i <= repetitions ){
+            start = System.nanoTime();
+            j = 0 ;
+            while( j < cycles ){
+                state.setup( grid.boxesAcross , grid.boxesDown );
+                k = 0 ;
+                while( k < nCells ){
+                    state.pushState( k );
+                    state.addMove( k / cellsInRow , k % cellsInRow , grid.data[k/cellsInRow][k%cellsInRow] - 1 );
+                    ++ k ;
+                }
+                while( -- k >= 0 ){
+                    state.popState( k );
+                }
+                ++ j ;
+            }
+            elapsed = System.nanoTime() - start ;
+            if( i > 0 && elapsed < best ){
+                best = elapsed ;
+            }
+            ++ i ;
+        }
+        report( "CellState push/add/pop [" + ( useUndoLog ? "undo log" : "snapshots" ) + "]" , best , 3 * nCells * cycles , "op" , "footprint=" + state.getThreadFootprint() );
+    }
+
+    /**
+     * Times the iteration through a sequence of masks.
+     * @param maskType mask type, as defined in <code>MaskUtils</code>
+     * @param boxesAcross grid dimension
+     * @param boxesDown grid dimension
+     * @param filledCells number of filled cells on each mask
+     * @param nMasks number of masks to iterate through
+     */
+
+    public void masks( int maskType , int boxesAcross , int boxesDown , int filledCells , int nMasks ) throws Exception {
+        long best = Long.MAX_VALUE , start , elapsed ;
+        int i , j = 0 ;
+        MaskFactory maskFactory ;
+        i = 0 ;
+        while( i <= repetitions ){
+            maskFactory = MaskUtils.createMaskFactory( maskType , boxesAcross * boxesDown , boxesAcross , null );
+            maskFactory.setFilledCells( filledCells );
+            maskFactory.shuffle();
+            start = System.nanoTime();
+            j = 0 ;
+            try {
+                while( j < nMasks ){
+                    maskFactory.nextElement();
+                    ++ j ;
+                }
+            } catch ( NoSuchElementException e ) {
+            }
+            elapsed = System.nanoTime() - start ;
+            if( i > 0 && elapsed < best ){
+                best = elapsed ;
+            }
+            ++ i ;
+        }
+        report( "MaskFactory.nextElement [" + MaskUtils.shortLabels[maskType] + " " + filledCells + "]" , best , j , "mask" , null );
+    }
+
+    /**
+     * Times the composition of puzzles.
+     * @param boxesAcross grid dimension
+     * @param boxesDown grid dimension
+     * @param filledCells number of filled cells on each puzzle
+     * @param nPuzzles number of puzzles to compose
+     * @param nSolvers number of solver threads
+     */
+
+    public void composer( int boxesAcross , int boxesDown , int filledCells , int nPuzzles , int nSolvers ) throws Exception {
+        long best = Long.MAX_VALUE , start , elapsed ;
+        MaskFactory maskFactory ;
+        Composer composer ;
+        int i = 0 ;
+        while( i <= repetitions ){
+            maskFactory = MaskUtils.createMaskFactory( MaskUtils.ROTATE_2 , boxesAcross * boxesDown , boxesAcross , null );
+            maskFactory.setFilledCells( filledCells );
+            maskFactory.shuffle();
+            composer = new Composer( null , boxesAcross , nPuzzles , 0 , 0 , Integer.MAX_VALUE , maskFactory , nSolvers , 0 , null ,
+                                     false , 0 , 0 , 0 , 0 , 0 , 0 , 0 , false , false , true , false );
+            start = System.nanoTime();
+            composer.start();
+            composer.join();
+            elapsed = System.nanoTime() - start ;
+            if( i > 0 && elapsed < best ){
+                best = elapsed ;
+            }
+            ++ i ;
+        }
+        report( "Composer [" + boxesAcross + "x" + boxesDown + " " + filledCells + "]" , best , nPuzzles , "puzzle" , null );
+    }
+
+    /**
+     * Checks that grids of the given dimensions that differ in the value
+     * of a single cell have distinct keys and print distinct puzzle identifiers, and
+     * that each key survives a round trip through its binary form.
+     * @param boxesAcross grid dimension
+     * @param boxesDown grid dimension
+     * @return the number of failures
+     */
+
+    public int keys( int boxesAcross , int boxesDown ) throws Exception {
+        final int cellsInRow = boxesAcross * boxesDown ;
+        byte[][] data = new byte[cellsInRow][cellsInRow];
+        int r , c , nVariants = 0 , nFailures = 0 ;
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                data[r][c] = (byte)( ( r % boxesAcross * boxesDown + r / boxesAcross + c )% cellsInRow + 1 );
+                ++ c ;
+            }
+            ++ r ;
+        }
+        final GridKey key = new GridKey( boxesAcross , boxesDown , data );
+        final String id = key.toString();
+        GridKey variant , copy ;
+        ByteArrayOutputStream bytes ;
+        byte value , v ;
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                value = data[r][c];
+                // Try every other value, including an empty cell.
+                v = 0 ;
+                while( v <= cellsInRow ){
+                    if( v == value ){
+                        ++ v ;
+                        continue ;
+                    }
+                    data[r][c] = v ;
+                    variant = new GridKey( boxesAcross , boxesDown , data );
+                    bytes = new ByteArrayOutputStream();
+                    variant.write( new DataOutputStream( bytes ) );
+                    copy = GridKey.read( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+                    if( variant.equals( key ) || variant.toString().equals( id ) || ! copy.equals( variant ) || ! copy.toString().equals( variant.toString() ) ){
+                        ++ nFailures ;
+                    }
+                    ++ nVariants ;
+                    ++ v ;
+                }
+                data[r][c] = value ;
+                ++ c ;
+            }
+            ++ r ;
+        }
+        output.println("GridKey [" + boxesAcross + "x" + boxesDown + "]: " + nVariants + " variants, " + nFailures + " failures" + ( nFailures > 0 ? " - FAIL" : " - OK" ) );
+        output.flush();
+        return nFailures ;
+    }
+
+    /**
+     * Writes a single line of results.
+     */
+
+    void report( String label , long nanos , int nOps , String unit , String notes ){
+        StringBuilder sb = new StringBuilder( label );
+        sb.append(": ");
+        sb.append( nOps );
+        sb.append(" ");
+        sb.append( unit );
+        sb.append("s in ");
+        sb.append( format.format( nanos / 1e6 ) );
+        sb.append("ms, ");
+        sb.append( nOps > 0 ? format.format( nanos / 1e3 / nOps ) : "-" );
+        sb.append("us/");
+        sb.append( unit );
+        if( notes instanceof String ){
+            sb.append(", ");
+            sb.append( notes );
+        }
+        output.println( sb.toString() );
+        output.flush();
+    }
+
+    /**
+     * Reads a corpus file, in any format accepted by PuzzleReader.
+     */
+
+    static String[] readCorpus( String filename ) throws Exception {
+        PuzzleReader reader = new PuzzleReader( new FileReader( filename ) );
+        Vector<String> puzzles = new Vector<String>();
+        Grid grid = new Grid();
+        while( reader.read( grid ) ){
+            puzzles.addElement( grid.toLine() );
+        }
+        return puzzles.toArray( new String[puzzles.size()] );
+    }
+
+    /**
+     * Command-line app to benchmark the solver.
+     * <br><code>Benchmark [-r repetitions] [-s strategy]* [-c corpus]* [-mu max unwinds] [-n composed puzzles] [strategies|alloc|chains|state|masks|composer|keys|all]*</code>
+     * <br><code>[-r repetitions]</code> stipulates the number of timed repetitions of each benchmark, of which the fastest is reported.
+     * The default is 3.
+     * <br><code>[-s strategy]</code> restricts the strategy benchmark to the named strategy. The option may be repeated.
+     * The default is to time every strategy.
+     * <br><code>[-c corpus]</code> adds a file of puzzles to the strategy and chain benchmarks. The option may be repeated.
+     * <br><code>[-mu max unwinds]</code> stipulates a limit on the number of unwinds permitted for each puzzle.
+     * The default is 10000, which stops the slowest strategies from running indefinitely.
+     * <br><code>[-n composed puzzles]</code> stipulates the number of puzzles to be composed. The default is 5.
+     * <br>The final arguments select the benchmarks to run. The default is all of them.
+     * <code>alloc</code> checks that Least Candidates Hybrid, Least Candidates Hybrid II
+     * and Dancing Links (or the strategies named with <code>-s</code>) don't allocate memory
+     * on the built-in corpora, including the 4x4 and chain corpora, once warmed up on them
+     * and exits with status 3 if any of them does.
+     * <code>keys</code> checks that grids of each size from 2x2 to 4x4 boxes that differ
+     * in a single cell print distinct puzzle identifiers and exits with status 4 if any don't.
+     */
+
+    public static void main( String[] args ){
+
+        final String usage = "Usage: Benchmark [-r repetitions] [-s strategy]* [-c corpus]* [-mu max unwinds] [-n composed puzzles] [strategies|alloc|chains|state|masks|composer|keys|all]*";
+
+        int repetitions = 3 ,
+            maxUnwinds = 10000 ,
+            nComposed = 5 ;
+
+        boolean runStrategies = false ,
+                runAllocation = false ,
+                runChains = false ,
+                runState = false ,
+                runMasks = false ,
+                runComposer = false ,
+                runKeys = false ;
+
+        Vector<String> strategies = new Vector<String>() ,
+                       corpusFiles = new Vector<String>();
+
+        int i = 0 ;
+        while( i < args.length ){
+            if( args[i].equals("-r") || args[i].equals("-mu") || args[i].equals("-n") ){
+                if( i == args.length - 1 ){
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
+                try {
+                    if( args[i].equals("-r") ){
+                        repetitions = Integer.parseInt( args[++i] );
+                    } else if( args[i].equals("-mu") ){
+                        maxUnwinds = Integer.parseInt( args[++i] );
+                    } else {
+                        nComposed = Integer.parseInt( args[++i] );
+                    }
+                } catch ( NumberFormatException e ) {
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
+            } else if( args[i].equals("-s") || args[i].equals("-c") ){
+                if( i == args.length - 1 ){
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
+                if( args[i].equals("-s") ){
+                    strategies.addElement( args[++i] );
+                } else {
+                    corpusFiles.addElement( args[++i] );
+                }
+            } else if( args[i].equals("strategies") ){
+                runStrategies = true ;
+            } else if( args[i].equals("alloc") ){
+                runAllocation = true ;
+            } else if( args[i].equals("chains") ){
+                runChains = true ;
+            } else if( args[i].equals("state") ){
+                runState = true ;
+            } else if( args[i].equals("masks") ){
+                runMasks = true ;
+            } else if( args[i].equals("composer") ){
+                runComposer = true ;
+            } else if( args[i].equals("keys") ){
+                runKeys = true ;
+            } else if( args[i].equals("all") ){
+                runStrategies = runAllocation = runChains = runState = runMasks = runComposer = runKeys = true ;
+            } else {
+                System.err.println( usage );
+                System.exit( 1 );
+            }
+            ++ i ;
+        }
+        if( ! ( runStrategies || runAllocation || runChains || runState || runMasks || runComposer || runKeys ) ){
+            runStrategies = runAllocation = runChains = runState = runMasks = runComposer = runKeys = true ;
+        }
+        Vector<String> allocationStrategies = new Vector<String>( strategies );
+        if( allocationStrategies.size() == 0 ){
+            allocationStrategies.addElement( Strategy.strategyNames[Strategy.LEAST_CANDIDATES_HYBRID] );
+            allocationStrategies.addElement( Strategy.strategyNames[Strategy.LEAST_CANDIDATES_HYBRID_II] );
+            allocationStrategies.addElement( Strategy.strategyNames[Strategy.DANCING_LINKS] );
+        }
+        if( strategies.size() == 0 ){
+            i = 0 ;
+            while( i < Strategy.strategyNames.length ){
+                strategies.addElement( Strategy.strategyNames[i++] );
+            }
+        }
+
+        Benchmark benchmark = new Benchmark( repetitions , System.out );
+
+        boolean allocates = false ;
+
+        int nKeyFailures = 0 ;
+
+        try {
+            if( runStrategies ){
+                String[] puzzles ;
+                int j ;
+                i = 0 ;
+                while( i < strategies.size() ){
+                    j = 0 ;
+                    while( j < corpora.length ){
+                        benchmark.strategy( strategies.elementAt( i ) , corpusNames[j] , corpora[j] , maxUnwinds );
+                        ++ j ;
+                    }
+                    j = 0 ;
+                    while( j < corpusFiles.size() ){
+                        puzzles = readCorpus( corpusFiles.elementAt( j ) );
+                        benchmark.strategy( strategies.elementAt( i ) , corpusFiles.elementAt( j ) , puzzles , maxUnwinds );
+                        ++ j ;
+                    }
+                    ++ i ;
+                }
+            }
+            if( runAllocation ){
+                // The chain corpus takes Least Candidates Hybrid II down its Nishio path.
+                String[] allocationCorpusNames = new String[1+corpusNames.length];
+                String[][] allocationCorpora = new String[1+corpora.length][];
+                System.arraycopy( corpusNames , 0 , allocationCorpusNames , 0 , corpusNames.length );
+                System.arraycopy( corpora , 0 , allocationCorpora , 0 , corpora.length );
+                allocationCorpusNames[corpusNames.length] = "chains";
+                allocationCorpora[corpora.length] = chainCorpus ;
+                i = 0 ;
+                while( i < allocationStrategies.size() ){
+                    allocates |= benchmark.allocation( allocationStrategies.elementAt( i ) , allocationCorpusNames , allocationCorpora , maxUnwinds );
+                    ++ i ;
+                }
+            }
+            if( runChains ){
+                benchmark.chains("chains" , chainCorpus , maxUnwinds );
+                i = 0 ;
+                while( i < corpusFiles.size() ){
+                    benchmark.chains( corpusFiles.elementAt( i ) , readCorpus( corpusFiles.elementAt( i ) ) , maxUnwinds );
+                    ++ i ;
+                }
+            }
+            if( runState ){
+                Grid grid = new Grid();
+                grid.populateLine( corpora[0][0] );
+                Solver solver = new Solver( grid , new DancingLinks( false , false ) );
+                solver.solution = new Grid();
+                solver.solve( solver.strategy , null , 0 , 1 , true , 0 , Integer.MAX_VALUE );
+                benchmark.cellState( solver.solution.toLine() , false , 10000 );
+                benchmark.cellState( solver.solution.toLine() , true , 10000 );
+            }
+            if( runMasks ){
+                benchmark.masks( MaskUtils.ROTATE_2 , 3 , 3 , 24 , 100000 );
+            }
+            if( runComposer ){
+                benchmark.composer( 3 , 3 , 28 , nComposed , Composer.defaultThreads );
+            }
+            if( runKeys ){
+                int boxesAcross , boxesDown ;
+                boxesAcross = 2 ;
+                while( boxesAcross <= 4 ){
+                    boxesDown = 2 ;
+                    while( boxesDown <= 4 ){
+                        nKeyFailures += benchmark.keys( boxesAcross , boxesDown );
+                        ++ boxesDown ;
+                    }
+                    ++ boxesAcross ;
+                }
+            }
+        } catch ( Exception e ) {
+            System.err.println( e.getMessage() );
+            System.exit( 2 );
+        }
+        if( allocates ){
+            System.exit( 3 );
+        }
+        if( nKeyFailures > 0 ){
+            System.exit( 4 );
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+/**
+ * A Canonicalizer reduces a grid to a canonical form under the full group
+ * of validity-preserving transformations, i.e. relabelling of the values,
+ * permutation of the bands, the stacks, the rows within each band and the
+ * columns within each stack and, where the boxes are square, transposition.
+ * Two grids are equivalent if and only if they share a canonical form.
+ * <p>
+ * The canonical form is the transformation that is lowest when read row by
+ * row, left to right, where empty cells count as zero and the values are
+ * relabelled 1, 2, 3 ... in order of first appearance. The search fixes the
+ * transposition and the first row and then chooses the columns one at a
+ * time so as to minimize the first row, then the remaining rows one at a
+ * time. Each branch is abandoned as soon as its partial form exceeds the
+ * lowest complete form found so far.
+ * <p>
+ * The canonicalizer owns its working arrays, which are only reallocated
+ * when the grid is resized, so it may be reused for any number of grids,
+ * though not by several threads at once.
+ */
+
+public class Canonicalizer {
+
+    // The value taken by lessFrom while the current branch agrees with the
+    // best form found so far.
+
+    final static int LEVEL = Integer.MAX_VALUE ;
+
+    int cellsInRow ,
+        rowsInBand ,
+        colsInStack ;
+
+    byte[][] source ,
+             current ,
+             best ;
+
+    int[] rowAt ,
+          colAt ,
+          bandAt ,
+          stackAt ,
+          label ,
+          labelled ;
+
+    boolean[] rowUsed ,
+              colUsed ,
+              bandUsed ,
+              stackUsed ;
+
+    int[] rowTwin ,
+          colTwin ,
+          bandTwin ,
+          stackTwin ;
+
+    // lessFrom is the index, in reading order, of the first cell at which
+    // the current branch falls below the best form.
+
+    int nLabels ,
+        lessFrom ;
+
+    /**
+     * Creates a Canonicalizer.
+     */
+
+    public Canonicalizer(){
+    }
+
+    /**
+     * Writes the canonical form of the given grid to a second grid, which
+     * will be resized if necessary. The given grid is left unchanged.
+     * @return the canonical grid
+     */
+
+    public Grid canonicalize( Grid grid , Grid canonical ){
+        search( grid );
+        if( canonical.boxesAcross != grid.boxesAcross || canonical.boxesDown != grid.boxesDown ){
+            canonical.resize( grid.boxesAcross , grid.boxesDown );
+        }
+        int r = 0 ;
+        while( r < cellsInRow ){
+            System.arraycopy( best[r] , 0 , canonical.data[r] , 0 , cellsInRow );
+            ++ r ;
+        }
+        return canonical ;
+    }
+
+    /**
+     * Returns the key of the canonical form of the given grid, which may
+     * be used both to detect equivalent grids and as a stable identifier.
+     * The given grid is left unchanged.
+     */
+
+    public GridKey canonicalKey( Grid grid ){
+        search( grid );
+        return new GridKey( grid.boxesAcross , grid.boxesDown , best );
+    }
+
+    /**
+     * Searches for the canonical form of the given grid and leaves it in best.
+     */
+
+    void search( Grid grid ){
+        resize( grid.cellsInRow , grid.boxesAcross , grid.boxesDown );
+        int r , c , t ;
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                best[r][c] = Byte.MAX_VALUE ;
+                ++ c ;
+            }
+            ++ r ;
+        }
+        t = 0 ;
+        while( t < ( grid.boxesAcross == grid.boxesDown ? 2 : 1 ) ){
+            r = 0 ;
+            while( r < cellsInRow ){
+                c = 0 ;
+                while( c < cellsInRow ){
+                    source[r][c] = t == 0 ? grid.data[r][c] : grid.data[c][r];
+                    ++ c ;
+                }
+                ++ r ;
+            }
+            findTwins();
+            lessFrom = LEVEL ;
+            placeRow( 0 );
+            ++ t ;
+        }
+    }
+
+    /**
+     * Allocates the working arrays for the given dimensions where necessary.
+     * Rows are grouped into bands of boxesAcross rows and columns into
+     * stacks of boxesDown columns.
+     */
+
+    void resize( int cellsInRow , int boxesAcross , int boxesDown ){
+        rowsInBand = boxesAcross ;
+        colsInStack = boxesDown ;
+        if( this.cellsInRow == cellsInRow ){
+            return ;
+        }
+        this.cellsInRow = cellsInRow ;
+        source = new byte[cellsInRow][cellsInRow];
+        current = new byte[cellsInRow][cellsInRow];
+        best = new byte[cellsInRow][cellsInRow];
+        rowAt = new int[cellsInRow];
+        colAt = new int[cellsInRow];
+        bandAt = new int[cellsInRow];
+        stackAt = new int[cellsInRow];
+        label = new int[1+cellsInRow];
+        labelled = new int[cellsInRow];
+        rowUsed = new boolean[cellsInRow];
+        colUsed = new boolean[cellsInRow];
+        bandUsed = new boolean[cellsInRow];
+        stackUsed = new boolean[cellsInRow];
+        rowTwin = new int[cellsInRow];
+        colTwin = new int[cellsInRow];
+        bandTwin = new int[cellsInRow];
+        stackTwin = new int[cellsInRow];
+    }
+
+    /**
+     * Links each row of the source grid to the nearest preceding row in
+     * the same band with identical contents, and likewise the columns,
+     * bands and stacks. Identical lines may be exchanged without changing
+     * the grid, so the search need only try the first unused line of each
+     * set. Without this, the search would explore every automorphism of a
+     * sparse grid, in which the empty rows and columns are all identical.
+     */
+
+    void findTwins(){
+        int i , j , k ;
+        i = 0 ;
+        while( i < cellsInRow ){
+            rowTwin[i] = colTwin[i] = -1 ;
+            j = i - 1 ;
+            while( j >= i - i % rowsInBand && rowTwin[i] == -1 ){
+                k = 0 ;
+                while( k < cellsInRow && source[i][k] == source[j][k] ){
+                    ++ k ;
+                }
+                if( k == cellsInRow ){
+                    rowTwin[i] = j ;
+                }
+                -- j ;
+            }
+            j = i - 1 ;
+            while( j >= i - i % colsInStack && colTwin[i] == -1 ){
+                k = 0 ;
+                while( k < cellsInRow && source[k][i] == source[k][j] ){
+                    ++ k ;
+                }
+                if( k == cellsInRow ){
+                    colTwin[i] = j ;
+                }
+                -- j ;
+            }
+            ++ i ;
+        }
+        i = 0 ;
+        while( i < cellsInRow / rowsInBand ){
+            bandTwin[i] = -1 ;
+            j = i - 1 ;
+            while( j >= 0 && bandTwin[i] == -1 ){
+                bandTwin[i] = sameLines( i * rowsInBand , j * rowsInBand , rowsInBand , true ) ? j : -1 ;
+                -- j ;
+            }
+            ++ i ;
+        }
+        i = 0 ;
+        while( i < cellsInRow / colsInStack ){
+            stackTwin[i] = -1 ;
+            j = i - 1 ;
+            while( j >= 0 && stackTwin[i] == -1 ){
+                stackTwin[i] = sameLines( i * colsInStack , j * colsInStack , colsInStack , false ) ? j : -1 ;
+                -- j ;
+            }
+            ++ i ;
+        }
+    }
+
+    /**
+     * Determines whether the given numbers of rows (or columns) starting
+     * at two different points of the source grid have identical contents.
+     */
+
+    boolean sameLines( int first , int second , int nLines , boolean rows ){
+        int i , k ;
+        i = 0 ;
+        while( i < nLines ){
+            k = 0 ;
+            while( k < cellsInRow ){
+                if( rows ? source[first+i][k] != source[second+i][k] : source[k][first+i] != source[k][second+i] ){
+                    return false ;
+                }
+                ++ k ;
+            }
+            ++ i ;
+        }
+        return true ;
+    }
+
+    /**
+     * Chooses the source row to appear at the given position. The first
+     * position of a band may take a row from any unused band, whereas
+     * subsequent positions are restricted to the band already chosen.
+     * The first row is placed before the columns are chosen.
+     */
+
+    void placeRow( int position ){
+        if( position == cellsInRow ){
+            if( lessFrom != LEVEL ){
+                int r = 0 ;
+                while( r < cellsInRow ){
+                    System.arraycopy( current[r] , 0 , best[r] , 0 , cellsInRow );
+                    ++ r ;
+                }
+                lessFrom = LEVEL ;
+            }
+            return ;
+        }
+        final int band = position / rowsInBand ;
+        int b , r , row , c , cmp , labelMark ;
+        b = 0 ;
+        while( b < cellsInRow / rowsInBand ){
+            if( position % rowsInBand == 0 ? bandUsed[b] || bandTwin[b] >= 0 && ! bandUsed[bandTwin[b]] : b != bandAt[band] ){
+                ++ b ;
+                continue ;
+            }
+            if( position % rowsInBand == 0 ){
+                bandAt[band] = b ;
+                bandUsed[b] = true ;
+            }
+            r = 0 ;
+            while( r < rowsInBand ){
+                row = b * rowsInBand + r ;
+                if( rowUsed[row] || rowTwin[row] >= 0 && ! rowUsed[rowTwin[row]] ){
+                    ++ r ;
+                    continue ;
+                }
+                rowAt[position] = row ;
+                rowUsed[row] = true ;
+                if( position == 0 ){
+                    placeColumn( 0 );
+                } else {
+                    if( lessFrom >= position * cellsInRow ){
+                        lessFrom = LEVEL ;
+                    }
+                    labelMark = nLabels ;
+                    cmp = 0 ;
+                    c = 0 ;
+                    while( c < cellsInRow ){
+                        current[position][c] = relabel( source[row][colAt[c]] );
+                        if( cmp == 0 && lessFrom == LEVEL ){
+                            cmp = current[position][c] - best[position][c];
+                        }
+                        ++ c ;
+                    }
+                    if( cmp < 0 ){
+                        lessFrom = position * cellsInRow ;
+                    }
+                    if( cmp <= 0 ){
+                        placeRow( 1 + position );
+                    }
+                    unlabel( labelMark );
+                }
+                rowUsed[row] = false ;
+                ++ r ;
+            }
+            if( position % rowsInBand == 0 ){
+                bandUsed[b] = false ;
+            }
+            ++ b ;
+        }
+    }
+
+    /**
+     * Chooses the source column to appear at the given position, which
+     * fixes one more cell of the first row. Once the first row is complete,
+     * the remaining rows are placed.
+     */
+
+    void placeColumn( int position ){
+        if( position == cellsInRow ){
+            placeRow( 1 );
+            return ;
+        }
+        final int stack = position / colsInStack ;
+        int s , c , col , cmp , labelMark ;
+        s = 0 ;
+        while( s < cellsInRow / colsInStack ){
+            if( position % colsInStack == 0 ? stackUsed[s] || stackTwin[s] >= 0 && ! stackUsed[stackTwin[s]] : s != stackAt[stack] ){
+                ++ s ;
+                continue ;
+            }
+            if( position % colsInStack == 0 ){
+                stackAt[stack] = s ;
+                stackUsed[s] = true ;
+            }
+            c = 0 ;
+            while( c < colsInStack ){
+                col = s * colsInStack + c ;
+                if( colUsed[col] || colTwin[col] >= 0 && ! colUsed[colTwin[col]] ){
+                    ++ c ;
+                    continue ;
+                }
+                colAt[position] = col ;
+                colUsed[col] = true ;
+                if( lessFrom >= position ){
+                    lessFrom = LEVEL ;
+                }
+                labelMark = nLabels ;
+                current[0][position] = relabel( source[rowAt[0]][col] );
+                cmp = lessFrom == LEVEL ? current[0][position] - best[0][position] : 0 ;
+                if( cmp < 0 ){
+                    lessFrom = position ;
+                }
+                if( cmp <= 0 ){
+                    placeColumn( 1 + position );
+                }
+                unlabel( labelMark );
+                colUsed[col] = false ;
+                ++ c ;
+            }
+            if( position % colsInStack == 0 ){
+                stackUsed[s] = false ;
+            }
+            ++ s ;
+        }
+    }
+
+    /**
+     * Returns the label of the given source value, allocating the next
+     * label if the value has not been seen before.
+     */
+
+    byte relabel( byte value ){
+        if( value == 0 ){
+            return 0 ;
+        }
+        if( label[value] == 0 ){
+            labelled[nLabels] = value ;
+            label[value] = ++ nLabels ;
+        }
+        return (byte) label[value];
+    }
+
+    /**
+     * Releases the labels allocated since the given mark.
+     */
+
+    void unlabel( int labelMark ){
+        while( nLabels > labelMark ){
+            label[labelled[-- nLabels]] = 0 ;
+        }
+    }
+}
@@ -27,7 +27,14 @@ package com.act365.sudoku;
 
 /**
  * CellState records the number of candidates remain for each
- * separate cell on the grid.
+ * separate cell on the grid. The candidates for each cell are held
+ * as a bitmask, in which bit v is set when the value v remains a 
+ * candidate, so grids of up to 64 cells per row are supported.
+ * The thread is either stored as a stack of snapshots or, when an
+ * undo log is used, as a list of the masks that have been changed.
+ * Snapshots are allocated on demand, so that memory use follows the
+ * depth of the search rather than the number of cells on the grid.
+ * @see UndoLog
  */
 
 public class CellState implements IState {
@@ -38,25 +45,66 @@ public class CellState implements IState {
         boxesDown ,
         cellsInRow ;
         
-    // State variables
+    // Mask with a bit set for every value
+    
+    long allCandidates ;
     
-    boolean[][][] eliminated ;
+    // State variables
     
-    byte[][] nEliminated ;
+    long[][] candidates ;
     
     // Thread
     
-    boolean[][][][] threadEliminated ;
+    long[][][] threadCandidates ;
+    
+    UndoLog undoLog ;
+    
+    transient long threadFootprint ;
+    
+    /**
+     * Creates a CellState instance that stores the thread as snapshots.
+     */
+    
+    public CellState(){
+        this( false );
+    }
     
-    byte[][][] threadNEliminated ;
+    /**
+     * Creates a CellState instance.
+     * @param useUndoLog whether the thread should be stored as an undo log rather than as snapshots
+     */
+    
+    public CellState( boolean useUndoLog ){
+        if( useUndoLog ){
+            undoLog = new UndoLog();
+        }
+    }
+    
+    /**
+     * Chooses whether the thread should be stored as an undo log. A change
+     * takes effect at the next call to setup().
+     * @param useUndoLog whether the thread should be stored as an undo log rather than as snapshots
+     */
+    
+    public void setUndoLog( boolean useUndoLog ){
+        if( useUndoLog != undoLog instanceof UndoLog ){
+            undoLog = useUndoLog ? new UndoLog() : null ;
+            cellsInRow = 0 ;
+        }
+    }
     
 	/**
      * Sets the state grid to the appropriate size.
+     * @throws IllegalArgumentException if the grid has more than 64 cells per row
 	 * @see com.act365.sudoku.IState#setup(int,int)
 	 */
      
 	public void setup(int boxesAcross , int boxesDown ) {
 
+        if( boxesAcross * boxesDown > 64 ){
+            throw new IllegalArgumentException("CellState supports grids of up to 64 cells per row");
+        }
+
         this.boxesAcross = boxesAcross ;
         this.boxesDown = boxesDown ;
 
@@ -64,28 +112,27 @@ public class CellState implements IState {
 
         cellsInRow = boxesAcross * boxesDown ;
         
-        int i , j , k ;
+        allCandidates = cellsInRow == 64 ? -1L : ( 1L << cellsInRow ) - 1 ;
+        
+        int i , j ;
         if( resize ){
-            eliminated = new boolean[cellsInRow][cellsInRow][cellsInRow];
-            nEliminated = new byte[cellsInRow][cellsInRow];
-    
-            threadEliminated = new boolean[cellsInRow*cellsInRow][cellsInRow][cellsInRow][cellsInRow];
-            threadNEliminated = new byte[cellsInRow*cellsInRow][cellsInRow][cellsInRow];
-        } else {
-            i = 0 ;
-            while( i < cellsInRow ){
-                j = 0 ;
-                while( j < cellsInRow ){
-                    nEliminated[i][j] = 0 ;
-                    k = 0 ;
-                    while( k < cellsInRow ){
-                        eliminated[i][j][k] = false ;
-                        ++ k ;
-                    }
-                    ++ j ;
-                }
-                ++ i ;
+            candidates = new long[cellsInRow][cellsInRow];
+            if( ! ( undoLog instanceof UndoLog ) ){
+                threadCandidates = new long[cellsInRow*cellsInRow][][];
+                threadFootprint = 0 ;
+            }
+        }
+        if( undoLog instanceof UndoLog ){
+            undoLog.setup( cellsInRow * cellsInRow );
+        }
+        i = 0 ;
+        while( i < cellsInRow ){
+            j = 0 ;
+            while( j < cellsInRow ){
+                candidates[i][j] = allCandidates ;
+                ++ j ;
             }
+            ++ i ;
         }
 	}
 
@@ -95,19 +142,18 @@ public class CellState implements IState {
 	 */
      
 	public void pushState( int nMoves ) {
-        int i, j , k ;
+        if( undoLog instanceof UndoLog ){
+            undoLog.mark( nMoves );
+            return ;
+        }
+        if( threadCandidates[nMoves] == null ){
+            threadCandidates[nMoves] = new long[cellsInRow][cellsInRow];
+            threadFootprint += 8 * cellsInRow * cellsInRow ;
+        }
+        int i ;
         i = 0 ;
         while( i < cellsInRow ){
-            j = 0 ;
-            while( j < cellsInRow ){
-                k = 0 ;
-                while( k < cellsInRow ){
-                    threadEliminated[nMoves][i][j][k] = eliminated[i][j][k];
-                    ++ k ;
-                }
-                threadNEliminated[nMoves][i][j] = nEliminated[i][j];
-                ++ j ;
-            }
+            System.arraycopy( candidates[i] , 0 , threadCandidates[nMoves][i] , 0 , cellsInRow );
             ++ i ;
         }
 	}
@@ -118,19 +164,22 @@ public class CellState implements IState {
 	 */
      
 	public void popState( int nMoves ) {
-        int i , j , k ;
+        if( undoLog instanceof UndoLog ){
+            final int mark = undoLog.getMark( nMoves );
+            int location ;
+            while( undoLog.size > mark ){
+                location = undoLog.locations[-- undoLog.size];
+                candidates[location/cellsInRow][location%cellsInRow] = undoLog.oldValues[undoLog.size];
+            }
+            return ;
+        }
+        if( threadCandidates[nMoves] == null ){
+            return ;
+        }
+        int i ;
         i = 0 ;
         while( i < cellsInRow ){
-            j = 0 ;
-            while( j < cellsInRow ){
-                k = 0 ;
-                while( k < cellsInRow ){
-                    eliminated[i][j][k] = threadEliminated[nMoves][i][j][k];
-                    ++ k ;
-                }
-                nEliminated[i][j] = threadNEliminated[nMoves][i][j];
-                ++ j ;
-            }
+            System.arraycopy( threadCandidates[nMoves][i] , 0 , candidates[i] , 0 , cellsInRow );
             ++ i ;
         }
 	}
@@ -142,58 +191,58 @@ public class CellState implements IState {
 	 */
 	
     public void addMove(int x, int y, int value ) throws MoveException {
+        MoveException.check( tryAddMove( x , y , value ) , x , y , value );
+    }
+
+	/**
+     * Adds the move (x,y):=v to the state grid without throwing an exception.
+     * @param value is in the range [0,cellsInRow), not [1,cellsInRow]. 
+	 * @see com.act365.sudoku.IState#tryAddMove(int, int, int)
+	 */
+	
+    public int tryAddMove(int x, int y, int value ) {
+        final long bit = 1L << value ,
+                   mask = ~ bit ;
         int i , j ;
         // Check that it's a valid candidate.
-        if( eliminated[x][y][value] ){
-            throw new MoveAlreadyEliminatedException( x , y , value );
-        }
-        // Eliminate other candidates for the current cell.
-        i = 0 ;
-        while( i < cellsInRow ){
-            if( i != value && ! eliminated[x][y][i] ){
-                eliminated[x][y][i] = true ;
-                ++ nEliminated[x][y];
-            }
-            ++ i ;
-        }
-        if( nEliminated[x][y] != cellsInRow - 1 ){
-            throw new MoveCantBeEliminatedException( x , y , value );
+        if( ( candidates[x][y] & bit ) == 0 ){
+            return MOVE_ALREADY_ELIMINATED ;
         }
         // Eliminate other candidates for the current row.
         j = 0 ;
         while( j < cellsInRow ){
-            if( j != y && ! eliminated[x][j][value] ){
-                eliminated[x][j][value] = true ;
-                ++ nEliminated[x][j];
+            if( undoLog instanceof UndoLog && ( candidates[x][j] & bit ) != 0 ){
+                undoLog.record( x * cellsInRow + j , candidates[x][j] );
             }
+            candidates[x][j] &= mask ;
             ++ j ;
         }
         // Eliminate other candidates for the current column.
         i = 0 ;
         while( i < cellsInRow ){
-            if( i != x && ! eliminated[i][y][value] ){
-                eliminated[i][y][value] = true ;
-                ++ nEliminated[i][y];
+            if( undoLog instanceof UndoLog && ( candidates[i][y] & bit ) != 0 ){
+                undoLog.record( i * cellsInRow + y , candidates[i][y] );
             }
+            candidates[i][y] &= mask ;
             ++ i ;
         }
         // Eliminate other candidates for the current subgrid.
         i = x / boxesAcross * boxesAcross - 1 ;
         while( ++ i < ( x / boxesAcross + 1 )* boxesAcross ){
-            if( i == x ){
-                continue ;
-            }
             j = y / boxesDown * boxesDown - 1 ;
             while( ++ j < ( y / boxesDown + 1 )* boxesDown ){
-                if( j == y ){
-                    continue ;
-                }
-                if( ! eliminated[i][j][value] ){
-                    eliminated[i][j][value] = true ;
-                    ++ nEliminated[i][j];
+                if( undoLog instanceof UndoLog && ( candidates[i][j] & bit ) != 0 ){
+                    undoLog.record( i * cellsInRow + j , candidates[i][j] );
                 }
+                candidates[i][j] &= mask ;
             }
         }
+        // Eliminate other candidates for the current cell.
+        if( undoLog instanceof UndoLog ){
+            undoLog.record( x * cellsInRow + y , candidates[x][y] );
+        }
+        candidates[x][y] = bit ;
+        return MOVE_ADDED ;
 	}
 
 	/**
@@ -203,10 +252,49 @@ public class CellState implements IState {
 	 */
      
 	public void eliminateMove(int x, int y, int value ) {
-        eliminated[x][y][value] = true ;
-        ++ nEliminated[x][y];
+        if( undoLog instanceof UndoLog ){
+            undoLog.record( x * cellsInRow + y , candidates[x][y] );
+        }
+        candidates[x][y] &= ~( 1L << value );
 	}
 
+    /**
+     * Returns the number of bytes allocated for snapshots or, when an
+     * undo log is used, the peak size of the log.
+     * @see com.act365.sudoku.IState#getThreadFootprint()
+     */
+    
+    public long getThreadFootprint(){
+        return undoLog instanceof UndoLog ? 12L * undoLog.getMaxSize() : threadFootprint ;
+    }
+    
+    /**
+     * Determines whether the value v has been eliminated as a candidate
+     * for the cell (x,y).
+     * @param value is in the range [0,cellsInRow), not [1,cellsInRow]. 
+     */
+    
+    public boolean isEliminated( int x , int y , int value ){
+        return ( candidates[x][y] & 1L << value ) == 0 ;
+    }
+    
+    /**
+     * Returns the number of values that have been eliminated as
+     * candidates for the cell (x,y).
+     */
+    
+    public int countEliminated( int x , int y ){
+        return cellsInRow - Long.bitCount( candidates[x][y] );
+    }
+    
+    /**
+     * Returns the bitmask of remaining candidates for the cell (x,y).
+     */
+    
+    public long getCandidates( int x , int y ){
+        return candidates[x][y];
+    }
+    
     /**
      * Produces a string representation of the state grid.
      */
@@ -225,7 +313,7 @@ public class CellState implements IState {
                 multipleValues = false ;
                 v = 0 ;
                 while( v < cellsInRow ){
-                    if( ! eliminated[i][j][v] ){
+                    if( ! isEliminated( i , j , v ) ){
                         if( multipleValues ){
                             sb.append("|");
                         } else {
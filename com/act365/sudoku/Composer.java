@@ -28,18 +28,28 @@ package com.act365.sudoku;
 import com.act365.sudoku.masks.*;
 
 import java.io.* ;
+import java.nio.file.* ;
 import java.text.* ;
 import java.util.* ;
+import java.util.concurrent.* ;
+import java.util.concurrent.atomic.* ;
 
 /**
  * A Composer object attempts to compose valid Su Doku puzzles with the
  * MostCandidates strategy. It runs as a thread because composition is
  * a lengthy process that the caller might well choose to terminate.
+ * Composition is a three-stage pipeline. A feeder task reads masks from
+ * the MaskFactory into a bounded queue, a fixed pool of solver workers
+ * takes masks from the queue and posts candidate puzzles to a second
+ * queue and a pool of graders, each with its own strategy, grades the
+ * candidates. The Composer thread waits for the pipeline to finish.
  */
 @SuppressWarnings({"rawtypes","unchecked"})
 public class Composer extends Thread {
 
     Vector puzzles ;
+
+    Set<GridKey> puzzleKeys ;
     
     GridContainer gridContainer ;
 
@@ -60,10 +70,13 @@ public class Composer extends Thread {
     boolean logicalFilter ,
             shuffleGrid ,
             shuffleMask ,
-            xmlFormat ;
+            xmlFormat ,
+            useUndoLog ;
     
     MaskFactory maskFactory ;
 
+    Vector<IMaskFilter> maskFilters ;
+
     Solver[] solvers ;
         
     IStrategy[] composeSolvers ;
@@ -96,18 +109,110 @@ public class Composer extends Thread {
                   maskSize ,
                   nSolns ,
                   nMasks ,
-                  nThreads ,
-                  nUnstartable ,
                   maxPuzzleComplexity ,
                   mostComplex ,
                   tempSolutions ;
     
-    transient boolean allSolutionsFound ;
+    transient volatile boolean allSolutionsFound ;
+    
+    transient LeastCandidatesHybrid[] graders ;
+
+    transient Solver[] graderSolvers ;
+
+    transient Canonicalizer[] canonicalizers ;
+
+    transient PuzzleStore store ;
+    
+    transient UniquenessChecker[] checkers ;
+    
+    transient ExecutorService solverPool ;
+    
+    transient BlockingQueue<QueuedMask> maskQueue ;
+    
+    transient BlockingQueue<Candidate> candidateQueue ;
     
-    transient boolean[] isAlive , 
-                        isStartable;
+    transient AtomicInteger nActiveWorkers ,
+                            nActiveGraders ;
+    
+    transient CountDownLatch finished ;
+
+    transient int[] nRejectedMasks ;
+    
+    // End-of-stream markers for the two queues.
+    
+    final static QueuedMask endOfMasks = new QueuedMask( new boolean[0][0] , -1 , null );
+    
+    final static Candidate endOfCandidates = new Candidate( null , 0 , 0 , null );
+
+    // Checkpoint state. The masks that have been issued but not finished
+    // are held in serial order. Each solver notes the mask on which it is
+    // working, so that the candidates can be traced back to their masks.
+
+    transient String checkpointName ;
+
+    transient int checkpointInterval ;
+
+    transient TreeMap<Integer,QueuedMask> pendingMasks ;
+
+    transient QueuedMask[] currentMasks ;
+
+    transient int[] nextPosition ;
+
+    transient int firstSerial ,
+                  firstSoln ;
+
+    transient Set<Integer> finishedSerials ;
+
+    final static int CHECKPOINT_MAGIC = 0x53754443 , // "SuDC"
+                     CHECKPOINT_VERSION = 3 ;
+
+    /**
+     * A QueuedMask is a mask that has been issued by the feeder, together
+     * with its serial number and, when checkpoints are written, the factory
+     * position from which it was drawn. The mask is finished once its
+     * solver has run and all of its candidates have been graded, which is
+     * tracked by a count of outstanding holds.
+     */
+
+    static class QueuedMask {
+
+        final boolean[][] cells ;
+
+        final int serial ;
+
+        final int[] position ;
+
+        final AtomicInteger holds = new AtomicInteger( 1 );
+
+        QueuedMask( boolean[][] cells , int serial , int[] position ){
+            this.cells = cells ;
+            this.serial = serial ;
+            this.position = position ;
+        }
+    }
     
-    transient LeastCandidatesHybrid lch ;
+    /**
+     * A Candidate is a puzzle that has been posted by a solver worker
+     * but is yet to be graded. The Composer statistics are those of
+     * the solver at the moment the puzzle was found.
+     */
+    
+    static class Candidate {
+        
+        Grid puzzle ;
+        
+        int composerComplexity ,
+            composerUnwinds ;
+
+        QueuedMask source ;
+        
+        Candidate( Grid puzzle , int composerComplexity , int composerUnwinds , QueuedMask source ){
+            this.puzzle = puzzle ;
+            this.composerComplexity = composerComplexity ;
+            this.composerUnwinds = composerUnwinds ;
+            this.source = source ;
+        }
+    }
     
     transient long startTime ;
     
@@ -176,12 +281,19 @@ public class Composer extends Thread {
         cellsInRow = maskFactory.getCellsInRow();
         solvers = new Solver[nSolvers];
         composeSolvers = new LeastCandidatesHybrid[nSolvers];
-        isAlive = new boolean[nSolvers];
-        isStartable = new boolean[nSolvers];
+        checkers = new UniquenessChecker[nSolvers];
+        graders = new LeastCandidatesHybrid[nSolvers];
+        graderSolvers = new Solver[nSolvers];
+        currentMasks = new QueuedMask[nSolvers];
+        pendingMasks = new TreeMap<Integer,QueuedMask>();
+        finishedSerials = new HashSet<Integer>();
+        canonicalizers = new Canonicalizer[nSolvers];
         solverMasks = new boolean[nSolvers][cellsInRow][cellsInRow];
         solverGrids = new Grid[nSolvers];
         puzzles = new Vector();
-        lch = new LeastCandidatesHybrid( false , true , false , true , explain );
+        puzzleKeys = ConcurrentHashMap.newKeySet();
+        maskFilters = new Vector<IMaskFilter>();
+        maskFilters.addElement( new EmptyLinesFilter( boxesAcross , cellsInRow / boxesAcross ) );
         logicalFilter = guessFilter == -1 || 
                         guessFilter == 0 && 
                         ( lockedSectorCandidatesFilter != 0 ||
@@ -195,6 +307,23 @@ public class Composer extends Thread {
         while( i < nSolvers ){
             composeSolvers[i] = new LeastCandidatesHybrid( false , leastCandidatesHybridFilter , false , false , false );
             solverGrids[i] = new Grid( boxesAcross , cellsInRow / boxesAcross );
+            checkers[i] = new UniquenessChecker();
+            graders[i] = new LeastCandidatesHybrid( false , true , false , true , explain );
+            graderSolvers[i] = new Solver( null , graders[i] , null , 0 , 2 , null );
+            canonicalizers[i] = new Canonicalizer();
+            solvers[i] = new Solver( "Solver-" + ( i + 1 ) , 
+                                     this ,
+                                     i ,
+                                     solverGrids[i] , 
+                                     null , 
+                                     composeSolvers[i] ,
+                                     composeSolverThreshold , 
+                                     maxSolns , 
+                                     maxUnwinds ,
+                                     maxComplexity ,
+                                     null );
+            solvers[i].composeChecker = new UniquenessChecker( composeSolvers[i] );
+            solvers[i].composeChecker.setUnavoidableSetCache( true );
             ++ i ;
         }
         
@@ -207,72 +336,341 @@ public class Composer extends Thread {
     
     /**
      * Called by a Solver object in order to indicate that a
-     * solution has been found.
+     * solution has been found. The puzzle is read from the solver
+     * grid and posted to the grading stage, so the call runs on the
+     * solver worker without taking the Composer monitor.
      * @see Solver
      * @param solverIndex index of the reporting solver
      */
     
-    public synchronized void addSolution( int solverIndex ){
-
-        boolean lockedSectorCandidates = false ,
-                disjointSubsets = false ,
-                twoSectorDisjointSubsets = false ,
-                singleValuedChains = false ,
-                manyValuedChains = false ,
-                nishio = false ,
-                logical ;
-
-        int puzzleComplexity ,
-            puzzleUnwinds ,
-            category = GUESS ;
-
+    public void addSolution( int solverIndex ){
         // We might already have enough puzzles from the other threads.
-        if( maxSolns > 0 && nSolns >= maxSolns ){
+        if( allSolutionsFound ){
             return ;
         }
         // The grid might have been completed by the composeSolver,
         // in which case only certain cells should be read from the
         // solver grid.
         int r , c ;
-        Grid solution = new Grid( solverGrids[solverIndex].boxesAcross , solverGrids[solverIndex].boxesDown );
-        solverGrids[solverIndex].solve( lch , 1 );
+        Grid puzzle = new Grid( solverGrids[solverIndex].boxesAcross , solverGrids[solverIndex].boxesDown );
+        checkers[solverIndex].check( solverGrids[solverIndex] , puzzle );
         r = 0 ;
         while( r < cellsInRow ){
             c = 0 ;
             while( c < cellsInRow ){
-                if( solverMasks[solverIndex][r][c] ){
-                    solution.data[r][c] = solverGrids[solverIndex].data[r][c] ;
-                } else {
-                    solution.data[r][c] = 0 ;
+                if( ! solverMasks[solverIndex][r][c] ){
+                    puzzle.data[r][c] = 0 ;
                 }
                 ++ c ;
             }
             ++ r ;
         }            
-        lch.reset();
         // Ensure that the puzzle appears in the correct form.
-        Grid puzzle = (Grid) solution.clone(); 
         if( shuffleGrid ){
             puzzle.shuffle( true , false , false );
         } else {
             puzzle.rectify( solverMasks[solverIndex] );
         }
+        currentMasks[solverIndex].holds.incrementAndGet();
+        candidateQueue.offer( new Candidate( puzzle , solvers[solverIndex].complexity , solvers[solverIndex].nUnwinds , currentMasks[solverIndex] ) );
+    }
+    
+    /**
+     * Adds a filter to the stage through which each mask passes before it
+     * is handed to a solver. The filters are applied in the order in which
+     * they were added and a mask is dropped by the first that rejects it.
+     * The Composer starts with an <code>EmptyLinesFilter</code> in place.
+     * @param filter filter to be added
+     */
+
+    public void addMaskFilter( IMaskFilter filter ){
+        maskFilters.addElement( filter );
+    }
+
+    /**
+     * Removes all of the mask filters, including the default.
+     */
+
+    public void clearMaskFilters(){
+        maskFilters.removeAllElements();
+    }
+
+    /**
+     * Determines whether the uniqueness checks made while each puzzle is
+     * composed should keep the unavoidable sets of the last solution that
+     * they found, so that later checks against the same solution may be
+     * settled without a search. The cache is kept by default.
+     * @param enabled whether the cache should be kept
+     */
+
+    public void setUnavoidableSetCache( boolean enabled ){
+        int i = 0 ;
+        while( i < nSolvers ){
+            solvers[i].composeChecker.setUnavoidableSetCache( enabled );
+            ++ i ;
+        }
+    }
+
+    /**
+     * Determines whether the state grids of the strategies used to compose
+     * and grade puzzles should record their threads in undo logs rather
+     * than snapshots. Snapshots are used by default.
+     * @param useUndoLog whether undo logs should be used
+     */
+
+    public void setUndoLog( boolean useUndoLog ){
+        this.useUndoLog = useUndoLog ;
+        int i = 0 ;
+        while( i < nSolvers ){
+            ( (LeastCandidatesHybrid) composeSolvers[i] ).setUndoLog( useUndoLog );
+            graders[i].setUndoLog( useUndoLog );
+            ++ i ;
+        }
+    }
+
+    /**
+     * Applies the mask filters to a mask and notes which, if any, rejected it.
+     */
+
+    boolean acceptMask( boolean[][] mask ){
+        int i = 0 ;
+        while( i < maskFilters.size() ){
+            if( ! maskFilters.elementAt( i ).accept( mask ) ){
+                ++ nRejectedMasks[i];
+                return false ;
+            }
+            ++ i ;
+        }
+        return true ;
+    }
+
+    /**
+     * Directs the Composer to append its puzzles to the given store.
+     * Every puzzle already held in the store is treated as having been
+     * seen before, so the run will only add puzzles that are new. The
+     * Composer closes the store when it finishes.
+     * @param store store to which puzzles will be appended
+     */
+
+    public void setStore( PuzzleStore store ) throws IOException {
+        this.store = store ;
+        int i = 0 ;
+        while( i < store.size() ){
+            puzzleKeys.add( store.getKey( i ) );
+            ++ i ;
+        }
+    }
+
+    /**
+     * Directs the Composer to write a checkpoint to the given file at the
+     * given interval and when it finishes. If the file already exists, the
+     * Composer resumes from the checkpoint: the mask factory is returned to
+     * the earliest mask that was unfinished, the masks that had already
+     * been finished are skipped and the counters and the record of the
+     * puzzles found are restored. Exact resumption requires an iterative
+     * run (i.e. masks that are not shuffled) over the same mask factory.
+     * In a shuffled run, the counters and the record of the puzzles found
+     * are restored but the masks are drawn afresh.
+     * @param checkpointName name of the checkpoint file
+     * @param checkpointInterval interval between checkpoints in seconds
+     * @throws Exception thrown if the checkpoint can't be read or doesn't
+     * match the mask factory
+     */
+
+    public void setCheckpoint( String checkpointName , int checkpointInterval ) throws Exception {
+        this.checkpointName = checkpointName ;
+        this.checkpointInterval = checkpointInterval ;
+        if( ! new File( checkpointName ).exists() ){
+            return ;
+        }
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( checkpointName ) ) );
+        try {
+            if( in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION ){
+                throw new IOException( checkpointName + " is not a Composer checkpoint");
+            }
+            firstSerial = in.readInt();
+            firstSoln = in.readInt();
+            int i , n = in.readInt();
+            i = 0 ;
+            while( i < n ){
+                finishedSerials.add( in.readInt() );
+                ++ i ;
+            }
+            int[] position = new int[in.readInt()];
+            i = 0 ;
+            while( i < position.length ){
+                position[i++] = in.readInt();
+            }
+            if( position.length > 0 && ! shuffleMask ){
+                maskFactory.setPosition( position );
+            }
+            n = in.readInt();
+            i = 0 ;
+            while( i < n ){
+                puzzleKeys.add( GridKey.read( in ) );
+                ++ i ;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a checkpoint. The file is written under a temporary name and
+     * then renamed, so an interrupted write leaves the previous checkpoint
+     * intact. The pending masks are read before the puzzles, so that every
+     * puzzle found by a finished mask is sure to be recorded.
+     */
+
+    void writeCheckpoint(){
+        int watermark ;
+        int[] position ;
+        Vector<Integer> finishedAhead = new Vector<Integer>();
+        synchronized( pendingMasks ){
+            if( pendingMasks.isEmpty() ){
+                watermark = nMasks ;
+                position = nextPosition ;
+            } else {
+                QueuedMask first = pendingMasks.firstEntry().getValue();
+                watermark = first.serial ;
+                position = first.position ;
+                int serial = watermark + 1 ;
+                while( serial < nMasks ){
+                    if( ! pendingMasks.containsKey( serial ) ){
+                        finishedAhead.addElement( serial );
+                    }
+                    ++ serial ;
+                }
+            }
+        }
+        final File file = new File( checkpointName ) ,
+                   tempFile = new File( checkpointName + ".tmp" );
+        try {
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) );
+            try {
+                out.writeInt( CHECKPOINT_MAGIC );
+                out.writeInt( CHECKPOINT_VERSION );
+                out.writeInt( watermark );
+                synchronized( puzzles ){
+                    out.writeInt( nSolns );
+                    out.writeInt( finishedAhead.size() );
+                    int i = 0 ;
+                    while( i < finishedAhead.size() ){
+                        out.writeInt( finishedAhead.elementAt( i++ ) );
+                    }
+                    out.writeInt( position instanceof int[] ? position.length : 0 );
+                    i = 0 ;
+                    while( position instanceof int[] && i < position.length ){
+                        out.writeInt( position[i++] );
+                    }
+                    out.writeInt( puzzleKeys.size() );
+                    for( GridKey key : puzzleKeys ){
+                        key.write( out );
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            Files.move( tempFile.toPath() , file.toPath() , StandardCopyOption.REPLACE_EXISTING , StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException e ) {
+            System.err.println( e.getMessage() );
+        }
+    }
+
+    /**
+     * Releases a hold on a mask. When the last hold goes, the mask is
+     * finished and no longer pending.
+     */
+
+    void release( QueuedMask mask ){
+        if( mask.holds.decrementAndGet() == 0 ){
+            synchronized( pendingMasks ){
+                pendingMasks.remove( mask.serial );
+            }
+        }
+    }
+
+    /**
+     * Solves a puzzle on the calling thread and records the unwinds and
+     * the complexity against it, as Grid.solve() would, without starting
+     * a thread of its own.
+     * @return false if the solve was interrupted or failed
+     */
+
+    static boolean solve( Solver solver , Grid puzzle , IStrategy strategy , int maxSolns ){
+        boolean solved ;
+        solver.grid = puzzle ;
+        try {
+            solver.solve( strategy , null , 0 , maxSolns , true , 0 , Integer.MAX_VALUE );
+            puzzle.nUnwinds = solver.getNumberOfUnwinds();
+            puzzle.complexity = solver.getComplexity();
+            solved = ! Thread.currentThread().isInterrupted();
+        } catch ( Exception e ) {
+            System.err.println( e.getMessage() );
+            solved = false ;
+        }
+        solver.grid = null ;
+        return solved ;
+    }
+
+    /**
+     * Grades a candidate puzzle, filters it and, if it hasn't been seen
+     * before, stores and reports it. Each grader calls the method with its
+     * own strategy, so the puzzle is solved and categorized outside any
+     * lock. Only the duplicate check and the output are made under the 
+     * lock on the puzzle list. Puzzles are compared by their canonical
+     * forms, so a puzzle that is merely a relabelled, permuted or
+     * transposed copy of an earlier puzzle is discarded.
+     * @param candidate puzzle to be graded
+     * @param lch strategy that belongs to the calling grader
+     * @param canonicalizer canonicalizer that belongs to the calling grader
+     * @param solver solver that belongs to the calling grader
+     */
+    
+    void grade( Candidate candidate , LeastCandidatesHybrid lch , Canonicalizer canonicalizer , Solver solver ){
+
+        boolean lockedSectorCandidates = false ,
+                disjointSubsets = false ,
+                twoSectorDisjointSubsets = false ,
+                singleValuedChains = false ,
+                manyValuedChains = false ,
+                nishio = false ,
+                logical ;
+
+        int puzzleComplexity ,
+            puzzleUnwinds ,
+            category = GUESS ;
+
+        StringBuilder sb = null ;
+
+        final Grid puzzle = candidate.puzzle ;
+        // We might already have enough puzzles.
+        if( allSolutionsFound ){
+            return ;
+        }
+        final GridKey key = canonicalizer.canonicalKey( puzzle );
         // Store (and report) the puzzle if it hasn't been seen before.
-        if( ! puzzles.contains( puzzle ) ){
+        if( ! puzzleKeys.contains( key ) ){
             // Categorize the puzzle and filter it out if necessary.
-            puzzle.solve( lch , 2 );
+            if( ! solve( solver , puzzle , lch , 2 ) ){
+                return ;
+            }
             puzzleComplexity = puzzle.complexity ;
             puzzleUnwinds = puzzle.nUnwinds ;
-            lch.reset();
-            if( puzzleComplexity > maxComplexity ){
-                mostComplex = nSolns ;
-                maxPuzzleComplexity = puzzleComplexity ;                
-            }
             logical = puzzleUnwinds == 1 ;
             if( logicalFilter && ! logical || guessFilter == 1 && logical ){
                 return ;
             }          
-            puzzle.solve( lch , 1 );  
+            // A logical puzzle is solved without a single unwind, so the
+            // thread already describes the solution and the eliminations
+            // are those made along it. Otherwise, the search is only
+            // repeated when the reasoning is to be reported.
+            if( ! logical && lch.explainsReasoning() ){
+                lch.reset();
+                if( ! solve( solver , puzzle , lch , 1 ) ){
+                    return ;
+                }
+            }
             if( logical ){
                 lockedSectorCandidates = lch.lockedSectorCandidatesEliminations > 0 ; 
                 if( lockedSectorCandidatesFilter == 1 && ! lockedSectorCandidates || 
@@ -306,17 +704,8 @@ public class Composer extends Thread {
                 }
             }
             if( output != null ){
-                if( ! xmlFormat ){
-                    double t = ( new Date().getTime() - startTime )/ 1000. ;
-                    output.println( "Puzzle " + ( 1 + nSolns ) +":\n");
-                    output.println( "Puzzle Complexity = " + puzzleComplexity );
-                    output.println( "Puzzle Unwinds = " + puzzleUnwinds );
-                    output.println( "Cumulative Composer Complexity = " + solvers[solverIndex].complexity );
-                    output.println( "Cumulative Composer Unwinds = " + solvers[solverIndex].nUnwinds );
-                    output.println( "Time = " + new DecimalFormat("#0.000").format( t ) + "s" );
-                }
                 boolean multipleCategories = false ;
-                StringBuilder sb = ! xmlFormat ? new StringBuilder() : null ;
+                sb = ! xmlFormat ? new StringBuilder() : null ;
                 if( logical ){
                     category = EASY ;
                     if( lockedSectorCandidates ){
@@ -379,7 +768,9 @@ public class Composer extends Thread {
                             multipleCategories = true ;
                         }
                     }
-                    sb.append("\n");
+                    if( ! xmlFormat ){
+                        sb.append("\n");
+                    }
                 }
                 if( lch.explainsReasoning() ){
                     int i = 0 ;
@@ -388,159 +779,297 @@ public class Composer extends Thread {
                         ++ i ;
                     }
                 }
-                if( sb != null && sb.length() > 0 ){
-                    output.println( sb.toString() );
-                }
             }
             lch.reset();
-            puzzles.addElement( puzzle );
-            if( output != null ){
-                if( xmlFormat ){
-                    output.println( puzzle.toXML( 1 + nSolns , featuredGrades[category] ) );
-                } else {
-                    output.println( puzzle.toString() );
+            synchronized( puzzles ){
+                // Another grader might have stored the same puzzle meanwhile.
+                if( allSolutionsFound || ! puzzleKeys.add( key ) ){
+                    return ;
+                }
+                if( puzzleComplexity > maxComplexity ){
+                    mostComplex = puzzles.size();
+                    maxPuzzleComplexity = puzzleComplexity ;                
+                }
+                if( output != null ){
+                    if( ! xmlFormat ){
+                        double t = ( new Date().getTime() - startTime )/ 1000. ;
+                        output.println( "Puzzle " + ( 1 + nSolns ) +":\n");
+                        output.println( "Puzzle ID = " + key );
+                        output.println( "Puzzle Complexity = " + puzzleComplexity );
+                        output.println( "Puzzle Unwinds = " + puzzleUnwinds );
+                        output.println( "Cumulative Composer Complexity = " + candidate.composerComplexity );
+                        output.println( "Cumulative Composer Unwinds = " + candidate.composerUnwinds );
+                        output.println( "Time = " + new DecimalFormat("#0.000").format( t ) + "s" );
+                    }
+                    if( sb != null && sb.length() > 0 ){
+                        output.println( sb.toString() );
+                    }
+                }
+                puzzles.addElement( puzzle );
+                if( store != null ){
+                    try {
+                        store.append( puzzle , key , puzzleComplexity , puzzleUnwinds );
+                    } catch ( IOException e ) {
+                        System.err.println( e.getMessage() );
+                    }
+                }
+                if( output != null ){
+                    if( xmlFormat ){
+                        output.println( puzzle.toXML( 1 + nSolns , featuredGrades[category] ) );
+                    } else {
+                        output.println( puzzle.toString() );
+                    }
+                    output.flush();
+                }
+                if( ++ nSolns == maxSolns ){
+                    allSolutionsFound = true ;
+                    finished.countDown();
                 }
-                output.flush();
-            }
-            if( ++ nSolns == maxSolns ){
-                allSolutionsFound = true ;
-                notifyAll();
             }
         }
     }
     
     /**
-     * Called by a Solver object in order to indicate that all
-     * possible solutions to the puzzle have been considered.
-     * @see Solver
-     * @param solverIndex index of finished solver
+     * A MaskFeeder reads masks from the MaskFactory into the bounded mask
+     * queue, which blocks it whenever the solver workers fall behind. Each
+     * mask is copied because the factory reuses its array. An end-of-masks
+     * marker is queued for each worker once the masks have run out or the
+     * factory has failed, so that the workers finish the masks that have
+     * already been queued and the Composer can report and checkpoint.
      */
     
-    public synchronized void solverFinished( int solverIndex ){
-        isAlive[solverIndex] = false ;
-        -- nThreads ;
-        notifyAll();    
+    class MaskFeeder implements Runnable {
+        
+        public void run(){
+            boolean[][] mask , copy = null ;
+            int[] position ;
+            QueuedMask queuedMask ;
+            boolean accepted , interrupted = false ;
+            int i , r , serial ;
+            try {
+                while( maxMasks == 0 || nMasks < maxMasks ){
+                    if( shuffleMask ){
+                        maskFactory.shuffle();
+                    }
+                    position = nextPosition ;
+                    try {
+                        mask = (boolean[][]) maskFactory.nextElement();
+                    } catch ( NoSuchElementException e ) {
+                        break ;
+                    }
+                    // A rejected mask takes its serial but is finished at once.
+                    if( accepted = acceptMask( mask ) ){
+                        copy = new boolean[cellsInRow][cellsInRow];
+                        r = 0 ;
+                        while( r < cellsInRow ){
+                            System.arraycopy( mask[r] , 0 , copy[r] , 0 , cellsInRow );
+                            ++ r ;
+                        }
+                    }
+                    synchronized( pendingMasks ){
+                        serial = nMasks ++ ;
+                        if( checkpointName instanceof String && ! shuffleMask ){
+                            nextPosition = maskFactory.getPosition();
+                        }
+                        // Skip the masks that were finished before a restart.
+                        if( finishedSerials.remove( serial ) || ! accepted ){
+                            continue ;
+                        }
+                        queuedMask = new QueuedMask( copy , serial , position );
+                        pendingMasks.put( serial , queuedMask );
+                    }
+                    maskQueue.put( queuedMask );
+                }
+            } catch ( InterruptedException e ) {
+                interrupted = true ;
+            } catch ( RuntimeException e ) {
+                System.err.println("The mask factory failed after " + nMasks + " masks: " + e );
+            } finally {
+                try {
+                    i = 0 ;
+                    while( i < nSolvers && ! interrupted ){
+                        maskQueue.put( endOfMasks );
+                        ++ i ;
+                    }
+                } catch ( InterruptedException e ) {
+                }
+            }
+        }
     }
-
+    
     /**
-     * Starts a new Solver thread to find puzzles for
-     * a fixed initial mask.
-     * @see Solver
-     * @param solverIndex index of solver to restart with a new mask
+     * A SolverWorker runs a single solver against one mask after another
+     * until the masks run out or the pool is shut down. The last worker
+     * to finish tells the graders that no more candidates will come.
      */
     
-    synchronized boolean startThread( int solverIndex ){
-        boolean[][] mask = null ;
-        if( shuffleMask ){
-            maskFactory.shuffle();
+    class SolverWorker implements Runnable {
+        
+        final int solverIndex ;
+        
+        SolverWorker( int solverIndex ){
+            this.solverIndex = solverIndex ;
         }
-        try {
-            mask = (boolean[][]) maskFactory.nextElement();
-        } catch ( NoSuchElementException e ) {
-            return false ;
+        
+        public void run(){
+            QueuedMask mask ;
+            int r ;
+            try {
+                while( ( mask = maskQueue.take() ) != endOfMasks && ! allSolutionsFound ){
+                    r = 0 ;
+                    while( r < cellsInRow ){
+                        System.arraycopy( mask.cells[r] , 0 , solverMasks[solverIndex][r] , 0 , cellsInRow );
+                        ++ r ;
+                    }
+                    currentMasks[solverIndex] = mask ;
+                    solverGrids[solverIndex].reset();
+                    MostCandidates strategy = new MostCandidates( solverMasks[solverIndex] , true );
+                    strategy.setUndoLog( useUndoLog );
+                    solvers[solverIndex].strategy = strategy ;
+                    solvers[solverIndex].run();
+                    // A mask whose search was cut short remains pending.
+                    if( Thread.currentThread().isInterrupted() ){
+                        break ;
+                    } else if( ! allSolutionsFound ){
+                        release( mask );
+                    }
+                }
+            } catch ( InterruptedException e ) {
+            } finally {
+                if( nActiveWorkers.decrementAndGet() == 0 ){
+                    int i = 0 ;
+                    while( i < graders.length ){
+                        candidateQueue.offer( endOfCandidates );
+                        ++ i ;
+                    }
+                }
+            }
         }
-        ++ nMasks ;
-        int r , c ;
-        r = 0 ;
-        while( r < cellsInRow ){
-            c = 0 ;
-            while( c < cellsInRow ){
-                solverMasks[solverIndex][r][c] = mask[r][c];
-                ++ c ;
+    }
+    
+    /**
+     * A Grader grades the candidates posted by the solver workers with
+     * its own strategy until it is told that no more candidates will come.
+     * The last grader to finish releases the Composer thread.
+     */
+    
+    class Grader implements Runnable {
+        
+        final int graderIndex ;
+        
+        Grader( int graderIndex ){
+            this.graderIndex = graderIndex ;
+        }
+        
+        public void run(){
+            Candidate candidate ;
+            try {
+                while( ! allSolutionsFound && ( candidate = candidateQueue.take() ) != endOfCandidates ){
+                    grade( candidate , graders[graderIndex] , canonicalizers[graderIndex] , graderSolvers[graderIndex] );
+                    if( ! allSolutionsFound ){
+                        release( candidate.source );
+                    }
+                }
+            } catch ( InterruptedException e ) {
+            } finally {
+                if( nActiveGraders.decrementAndGet() == 0 ){
+                    finished.countDown();
+                }
             }
-            ++ r ;
         }
-        solverGrids[solverIndex].reset();
-        solvers[solverIndex] = new Solver( "Solver-" + ( solverIndex + 1 ) , 
-                                           this ,
-                                           solverIndex ,
-                                           solverGrids[solverIndex] , 
-                                           new MostCandidates( solverMasks[solverIndex] , true ) , 
-                                           composeSolvers[solverIndex] ,
-                                           composeSolverThreshold , 
-                                           maxSolns , 
-                                           maxUnwinds ,
-                                           maxComplexity ,
-                                           null );
-        solvers[solverIndex].start();
-        while( ! solvers[solverIndex].isAlive() );
-        isAlive[solverIndex] = true ;
-        ++ nThreads ;
-        return true ;
     }
     
     /**
-     * Starts a Composer thread. The thread will start a number of Solvers
-     * and collate the returned results.
+     * Starts a Composer thread. The thread starts the mask feeder, the
+     * solver workers and the graders on a fixed pool and then waits until
+     * enough puzzles have been found, the masks have been exhausted or
+     * the thread is interrupted.
      * @see Solver
      */
     
     @Override public void run(){
-        nSolns = 0 ;
-        nMasks = 0 ;
+        nSolns = firstSoln ;
+        nMasks = firstSerial ;
         allSolutionsFound = false ;
-        nThreads = 0 ;
-        nUnstartable = 0 ;
-        // Set off the solver threads, one per mask.
+        pendingMasks.clear();
+        if( checkpointName instanceof String && ! shuffleMask ){
+            nextPosition = maskFactory.getPosition();
+        }
+        maskQueue = new ArrayBlockingQueue<QueuedMask>( 2 * nSolvers );
+        candidateQueue = new LinkedBlockingQueue<Candidate>();
+        nActiveWorkers = new AtomicInteger( nSolvers );
+        nActiveGraders = new AtomicInteger( graders.length );
+        finished = new CountDownLatch( 1 );
+        nRejectedMasks = new int[maskFilters.size()];
+        solverPool = Executors.newFixedThreadPool( 1 + nSolvers + graders.length );
+        solverPool.execute( new MaskFeeder() );
         int i = 0 ;
-        while( i < nSolvers && ( maxMasks == 0 || nMasks < maxMasks ) ){
-            isAlive[i] = false ;
-            if( !( isStartable[i] = startThread( i ) ) ){
-                ++ nUnstartable ;
-            }
+        while( i < nSolvers ){
+            solverPool.execute( new SolverWorker( i ) );
             ++ i ;
         }
-        // Wait for the reports back.
-        synchronized( this ){
-            while( ! allSolutionsFound && nThreads > 0 && ( maxMasks == 0 || nMasks <= maxMasks ) ){
-                try {
-                    while( ! allSolutionsFound && 
-                           nThreads + nUnstartable == nSolvers && 
-                           ( maxMasks == 0 || nMasks <= maxMasks ) ){
-                        wait();
-                    }                
-                } catch ( InterruptedException e ) {
-                    break ;
+        i = 0 ;
+        while( i < graders.length ){
+            solverPool.execute( new Grader( i ) );
+            ++ i ;
+        }
+        // Wait for the graders to finish or for enough puzzles to be found,
+        // writing checkpoints as requested.
+        try {
+            if( checkpointName instanceof String ){
+                while( ! finished.await( checkpointInterval , TimeUnit.SECONDS ) ){
+                    writeCheckpoint();
+                }
+            } else {
+                finished.await();
+            }
+        } catch ( InterruptedException e ) {
+        }
+        // Interrupt the feeder and the remaining workers.
+        solverPool.shutdownNow();
+        try {
+            while( ! solverPool.awaitTermination( 1 , TimeUnit.SECONDS ) );
+        } catch ( InterruptedException e ) {
+        }
+        if( checkpointName instanceof String ){
+            writeCheckpoint();
+        }
+        if( store != null ){
+            try {
+                store.close();
+            } catch ( IOException e ) {
+                System.err.println( e.getMessage() );
+            }
+        }
+        if( gridContainer != null ){
+            if( puzzles.size() > 0 ){
+                gridContainer.setGrid( (Grid) puzzles.elementAt( 0 ) );
+            }
+        } else {
+            if( xmlFormat && output != null ){
+                output.println( SuDokuUtils.libraryBookFooter() );
+                output.close();
+            } else if( output != null ){
+                System.out.println( nSolns + " solutions found");
+                final int nFilteredMasks = nMasks - firstSerial ;
+                i = 0 ;
+                while( i < maskFilters.size() && nFilteredMasks > 0 ){
+                    System.out.println("Mask filter \"" + maskFilters.elementAt( i ) + "\" rejected " + nRejectedMasks[i] + " of " + nFilteredMasks + " masks (" + ( 100 * nRejectedMasks[i] / nFilteredMasks ) + "%)");
+                    ++ i ;
                 }
+                int nChecks = 0 , nSettled = 0 ;
                 i = 0 ;
                 while( i < nSolvers ){
-                    if( ! isAlive[i] && isStartable[i] ){
-                        if( !( isStartable[i] = startThread( i ) ) ){
-                            ++ nUnstartable ;                        
-                        }
-                    }
+                    nChecks += solvers[i].composeChecker.getChecks();
+                    nSettled += solvers[i].composeChecker.getChecksSettledByUnavoidableSets();
                     ++ i ;
                 }
-            }
-            // Interrupt the remaining threads.
-            i = 0 ;
-            while( i < nSolvers ){
-                if( isAlive[i] ){
-                    solvers[i].interrupt();
-                    while( isAlive[i] ){
-                        try {
-                            wait();
-                        } catch ( InterruptedException ie ) {
-                            continue ;
-                        }
-                    }
+                if( nChecks > 0 ){
+                    System.out.println("Unavoidable sets settled " + nSettled + " of " + nChecks + " uniqueness checks (" + ( 100L * nSettled / nChecks ) + "%)");
                 }
-                ++ i ;
-            }
-            if( gridContainer != null ){
                 if( puzzles.size() > 0 ){
-                    gridContainer.setGrid( (Grid) puzzles.elementAt( 0 ) );
-                }
-            } else {
-                if( xmlFormat && output != null ){
-                    output.println( SuDokuUtils.libraryBookFooter() );
-                    output.close();
-                } else {
-                    System.out.println( nSolns + " solutions found");
-                    if( nSolns > 0 ){
-                        System.out.println("Most complex: (" + maxPuzzleComplexity + ")");
-                        System.out.println( ((Grid) puzzles.elementAt( mostComplex ) ).toString() );
-                    }
+                    System.out.println("Most complex: (" + maxPuzzleComplexity + ")");
+                    System.out.println( ((Grid) puzzles.elementAt( mostComplex ) ).toString() );
                 }
             }
         }
@@ -561,12 +1090,20 @@ public class Composer extends Thread {
      * <br><code>[-f]</code> stipulates that the full set of Least Candidates Hybrid algorithms should be used to solve.
      * <br><code>[-shuffle]</code> stipulates that the puzzles should be randomly shuffled.
      * <br><code>[-xml]</code> stipulates that the output should be in XML format.
+     * <br><code>[-u]</code> stipulates that the state grids should record their threads in undo logs rather than snapshots.
+     * <br><code>[-store file]</code> stipulates that the puzzles should be appended to the given puzzle store, which will be created if necessary. Puzzles already in the store will not be composed again.
+     * <br><code>[-checkpoint file]</code> stipulates that checkpoints should be written to the given file. If the file exists, the run resumes from it.
+     * <br><code>[-ci interval]</code> stipulates the interval between checkpoints in seconds. The default is 60.
+     * <br><code>[-minclues n]</code> stipulates that masks with fewer than <code>n</code> cells in any row, column or box should be rejected before they reach a solver.
+     * <br><code>[-nofilter]</code> stipulates that masks should not be filtered at all. By default, masks with two empty rows in a band or two empty columns in a stack are rejected, as they can't yield unique puzzles.
+     * <br><code>[-nosets]</code> stipulates that the uniqueness checks should not keep the unavoidable sets of the solutions they find.
+     * <br><code>[-part k/n]</code> stipulates that the masks should be iterated from the natural start of the sequence and that only partition <code>k</code> (from 0) of <code>n</code> should be considered, so that <code>n</code> processes may share the mask space between them.
      * <br><code>-i</code> stipulates that the initial mask should be read from standard input.
      * <br><code>#cells</code> stipulates the number of initially-filled cells to appear in the puzzles.   
      */
 
     public static void main( String[] args ){
-        final String usage = "Usage: Composer [-a across] [-d down] [-ms max solns|-mm max masks] [-mu max unwinds] [-mc max complexity] [-s solvers] [-c threshold] [-v] [-shuffle] [-iter] [-f] [-xml] -i|#cells" ,
+        final String usage = "Usage: Composer [-a across] [-d down] [-ms max solns|-mm max masks] [-mu max unwinds] [-mc max complexity] [-s solvers] [-c threshold] [-v] [-shuffle] [-iter] [-f] [-xml] [-u] [-store file] [-checkpoint file] [-ci interval] [-minclues n] [-nofilter] [-nosets] [-part k/n] -i|#cells" ,
                      strategyTypes = "Valid strategy types are:\nSSC [Single Sector Candidates]\nDS [Disjoint Subsets]\nSVS [Single-Valued Strings]\nMVS [Many-Valued Strings]\nNishio";
         
         int boxesAcross = 3 ,
@@ -594,6 +1131,18 @@ public class Composer extends Thread {
                 shuffleGrid = false ,
                 shuffleMask = true ,
                 xmlFormat = false ;
+
+        String storeName = null ,
+               checkpointName = null ;
+
+        int checkpointInterval = defaultCheckpointInterval ,
+            part = 0 ,
+            nParts = 0 ,
+            minClues = 0 ;
+
+        boolean maskFilter = true ,
+                unavoidableSetCache = true ,
+                useUndoLog = false ;
         
         // Process command-line args.
         if( args.length == 0 ){
@@ -674,8 +1223,42 @@ public class Composer extends Thread {
                 shuffleGrid = true ;
             } else if( args[i].equals("-iter") ){
                 shuffleMask = false ;
+            } else if( args[i].equals("-minclues") ){
+                try {
+                    minClues = Integer.parseInt( args[++i] ); 
+                } catch ( NumberFormatException e ) {
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
+            } else if( args[i].equals("-nofilter") ){
+                maskFilter = false ;
+            } else if( args[i].equals("-nosets") ){
+                unavoidableSetCache = false ;
+            } else if( args[i].equals("-part") && i < args.length - 2 ){
+                try {
+                    String[] fields = args[++i].split("/");
+                    part = Integer.parseInt( fields[0] );
+                    nParts = Integer.parseInt( fields[1] );
+                } catch ( RuntimeException e ) {
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
+                shuffleMask = false ;
             } else if( args[i].equals("-xml") ) {
                 xmlFormat = true ;
+            } else if( args[i].equals("-u") ) {
+                useUndoLog = true ;
+            } else if( args[i].equals("-store") && i < args.length - 2 ) {
+                storeName = args[++i];
+            } else if( args[i].equals("-checkpoint") && i < args.length - 2 ) {
+                checkpointName = args[++i];
+            } else if( args[i].equals("-ci") ){
+                try {
+                    checkpointInterval = Integer.parseInt( args[++i] ); 
+                } catch ( NumberFormatException e ) {
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
             } else if( args[i].charAt( 0 ) == '+' ) {
                 sign = 1 ;
             } else if( args[i].charAt( 0 ) == '-' ) {
@@ -752,40 +1335,64 @@ public class Composer extends Thread {
                 maskFactory = MaskUtils.createMaskFactory( maskType , boxesAcross * boxesDown , boxesAcross , null );
             }
             filledCells = maskFactory.setFilledCells( filledCells );
-            maskFactory.shuffle();
+            if( nParts > 0 ){
+                maskFactory.setPartition( part , nParts );
+            } else {
+                maskFactory.shuffle();
+            }
         } catch ( Exception e ) {
             System.err.println( e.getMessage() );
             System.exit( 2 );
         }
         // Create the puzzles.
         try {
-            new Composer( null , 
-                          boxesAcross , 
-                          maxSolns ,
-                          maxMasks , 
-                          maxUnwinds ,
-                          maxComplexity ,
-                          maskFactory , 
-                          nSolvers , 
-                          composeSolverThreshold , 
-                          System.out ,
-                          leastCandidatesHybridFilter ,
-                          lockedSectorCandidatesFilter ,
-                          disjointSubsetsFilter ,
-                          twoSectorDisjointSubsetsFilter ,
-                          singleValuedChainsFilter ,
-                          manyValuedChainsFilter ,
-                          nishioFilter ,
-                          guessFilter ,
-                          explain ,
-                          shuffleGrid ,
-                          shuffleMask ,
-                          xmlFormat ).start();  
+            Composer composer = new Composer( null , 
+                                              boxesAcross , 
+                                              maxSolns ,
+                                              maxMasks , 
+                                              maxUnwinds ,
+                                              maxComplexity ,
+                                              maskFactory , 
+                                              nSolvers , 
+                                              composeSolverThreshold , 
+                                              System.out ,
+                                              leastCandidatesHybridFilter ,
+                                              lockedSectorCandidatesFilter ,
+                                              disjointSubsetsFilter ,
+                                              twoSectorDisjointSubsetsFilter ,
+                                              singleValuedChainsFilter ,
+                                              manyValuedChainsFilter ,
+                                              nishioFilter ,
+                                              guessFilter ,
+                                              explain ,
+                                              shuffleGrid ,
+                                              shuffleMask ,
+                                              xmlFormat );
+            if( ! maskFilter ){
+                composer.clearMaskFilters();
+            }
+            if( ! unavoidableSetCache ){
+                composer.setUnavoidableSetCache( false );
+            }
+            if( useUndoLog ){
+                composer.setUndoLog( true );
+            }
+            if( minClues > 0 ){
+                composer.addMaskFilter( new SectorCluesFilter( boxesAcross , boxesDown , minClues ) );
+            }
+            if( storeName instanceof String ){
+                composer.setStore( new PuzzleStore( storeName , boxesAcross , boxesDown ) );
+            }
+            if( checkpointName instanceof String ){
+                composer.setCheckpoint( checkpointName , checkpointInterval );
+            }
+            composer.start();  
         } catch ( Exception e ) {
             System.out.println( e.getMessage() );
             System.exit( 3 );
         }
     }
     
-    public final static int defaultThreads = 3 ;
+    public final static int defaultThreads = 3 ,
+                            defaultCheckpointInterval = 60 ;
 }
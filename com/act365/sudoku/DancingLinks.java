@@ -0,0 +1,460 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+/**
+ * The DancingLinks strategy treats Su Doku as an exact cover problem
+ * and solves it with Knuth's Algorithm X, where the cover matrix is
+ * held as a set of doubly-linked lists (see Knuth, "Dancing Links", 2000).
+ * Each matrix row represents a move (x,y):=v and each matrix column
+ * represents a constraint - a cell that has to be filled or a value
+ * that has to appear in a row, column or box. At each step, the
+ * constraint with the fewest remaining moves is selected and those
+ * moves are offered as candidates.
+ * <br>The links are stored in integer arrays, which are only reallocated
+ * when the grid is resized. Moves that have been eliminated during an unwind
+ * are removed from the matrix and reinstated when the thread is unwound
+ * beyond the point at which they were eliminated.
+ */
+
+public class DancingLinks extends StrategyBase implements IStrategy {
+
+    // Matrix dimensions
+
+    int cellsInRow ,
+        boxesAcross ,
+        boxesDown ,
+        nColumns ,
+        nRows ;
+
+    // Links - node 0 is the root, nodes 1 to nColumns are the column
+    // headers and the remaining nodes appear four to a matrix row.
+
+    int[] left ,
+          right ,
+          up ,
+          down ,
+          column ,
+          size ;
+
+    boolean[] isCovered ,
+              isRemoved ;
+
+    // Operations applied since setup - a non-negative entry is a selected
+    // row, a negative entry -1-r is a removed row r.
+
+    int[] operations ,
+          depths ;
+
+    int nOperations ;
+
+    /**
+     * Creates a new DancingLinks instance.
+     * @param randomize whether the candidate should be randomly chosen from the set of possibles
+     * @param explain whether explanatory debug should be produced
+     */
+
+    public DancingLinks( boolean randomize ,
+                         boolean explain ){
+        super( randomize , explain );
+    }
+
+    /**
+     * Builds the cover matrix for the given grid and selects the
+     * rows that correspond to its filled cells.
+     * @throws MoveException if the filled cells are inconsistent
+     */
+
+    public void setup( Grid grid ) throws Exception {
+
+        super.setup( grid );
+
+        if( resize ){
+            cellsInRow = grid.cellsInRow ;
+            nColumns = 4 * cellsInRow * cellsInRow ;
+            nRows = cellsInRow * cellsInRow * cellsInRow ;
+
+            final int nNodes = 1 + nColumns + 4 * nRows ;
+
+            left = new int[nNodes];
+            right = new int[nNodes];
+            up = new int[nNodes];
+            down = new int[nNodes];
+            column = new int[nNodes];
+            size = new int[1+nColumns];
+            isCovered = new boolean[1+nColumns];
+            isRemoved = new boolean[nRows];
+            operations = new int[cellsInRow*cellsInRow+nRows];
+            depths = new int[cellsInRow*cellsInRow+nRows];
+        }
+        boxesAcross = grid.boxesAcross ;
+        boxesDown = grid.boxesDown ;
+        nOperations = 0 ;
+
+        // Link the column headers.
+        int c , r , k , node , x , y , v ;
+        c = 0 ;
+        while( c <= nColumns ){
+            left[c] = c == 0 ? nColumns : c - 1 ;
+            right[c] = c == nColumns ? 0 : c + 1 ;
+            up[c] = down[c] = column[c] = c ;
+            size[c] = 0 ;
+            isCovered[c] = false ;
+            ++ c ;
+        }
+        // Link the rows.
+        r = 0 ;
+        while( r < nRows ){
+            x = r / ( cellsInRow * cellsInRow );
+            y = r / cellsInRow % cellsInRow ;
+            v = r % cellsInRow ;
+            isRemoved[r] = false ;
+            k = 0 ;
+            while( k < 4 ){
+                node = firstNode( r ) + k ;
+                switch( k ){
+                    case 0:
+                    c = 1 + x * cellsInRow + y ;
+                    break;
+                    case 1:
+                    c = 1 + cellsInRow *( cellsInRow + x ) + v ;
+                    break;
+                    case 2:
+                    c = 1 + cellsInRow *( 2 * cellsInRow + y ) + v ;
+                    break;
+                    default:
+                    c = 1 + cellsInRow *( 3 * cellsInRow + x / boxesAcross * boxesAcross + y / boxesDown ) + v ;
+                    break;
+                }
+                column[node] = c ;
+                up[node] = up[c];
+                down[node] = c ;
+                down[up[c]] = node ;
+                up[c] = node ;
+                ++ size[c];
+                left[node] = k == 0 ? node + 3 : node - 1 ;
+                right[node] = k == 3 ? node - 3 : node + 1 ;
+                ++ k ;
+            }
+            ++ r ;
+        }
+        // Select the rows that correspond to the filled cells.
+        x = 0 ;
+        while( x < cellsInRow ){
+            y = 0 ;
+            while( y < cellsInRow ){
+                if( grid.data[x][y] > 0 ){
+                    r = ( x * cellsInRow + y )* cellsInRow + grid.data[x][y] - 1 ;
+                    if( ! isAvailable( r ) ){
+                        throw new MoveAlreadyEliminatedException( x , y , grid.data[x][y] - 1 );
+                    }
+                    select( r );
+                }
+                ++ y ;
+            }
+            ++ x ;
+        }
+    }
+
+    /**
+     * Finds the constraint that can be satisfied in the fewest ways
+     * and offers each of those ways as a candidate.
+     * @see com.act365.sudoku.IStrategy#findCandidates()
+     */
+
+    public int findCandidates(){
+        int c , best = 0 , node , r , x , y , v ;
+        StringBuilder sb ;
+        nCandidates = 0 ;
+        score = 0 ;
+        c = right[0];
+        while( c != 0 ){
+            if( best == 0 || size[c] < size[best] ){
+                if( ( best = c ) > 0 && size[c] <= 1 ){
+                    break ;
+                }
+            }
+            c = right[c];
+        }
+        if( best == 0 || size[best] == 0 ){
+            return 0 ;
+        }
+        score = size[best];
+        node = down[best];
+        while( node != best ){
+            r = ( node - nColumns - 1 )/ 4 ;
+            x = r / ( cellsInRow * cellsInRow );
+            y = r / cellsInRow % cellsInRow ;
+            v = r % cellsInRow ;
+            xCandidates[nCandidates] = x ;
+            yCandidates[nCandidates] = y ;
+            valueCandidates[nCandidates] = (byte)( v + 1 );
+            if( explain ){
+                sb = new StringBuilder();
+                if( best <= cellsInRow * cellsInRow ){
+                    sb.append("The value ");
+                    SuDokuUtils.appendValue( sb , v );
+                    sb.append(" is ");
+                    if( score > 1 ){
+                        sb.append("one of ");
+                        sb.append( score );
+                        sb.append(" candidates ");
+                    } else {
+                        sb.append("the only candidate ");
+                    }
+                    sb.append("for the cell ");
+                    SuDokuUtils.appendCell( sb , x , y );
+                } else {
+                    sb.append("The cell ");
+                    SuDokuUtils.appendCell( sb , x , y );
+                    sb.append(" is ");
+                    if( score > 1 ){
+                        sb.append("one of ");
+                        sb.append( score );
+                        sb.append(" positions ");
+                    } else {
+                        sb.append("the only position ");
+                    }
+                    sb.append("for the value ");
+                    SuDokuUtils.appendValue( sb , v );
+                    sb.append(" in ");
+                    SuDokuUtils.appendSector( sb , cellsInRow , boxesAcross , ( best - 1 )/ cellsInRow - cellsInRow );
+                }
+                sb.append(".\n");
+                reasonCandidates[nCandidates] = sb ;
+            }
+            ++ nCandidates ;
+            node = down[node];
+        }
+        return nCandidates ;
+    }
+
+    /**
+     * Selects the matrix row that corresponds to the move (x,y):=value.
+     * A move that is no longer available is rejected before it reaches
+     * the thread.
+     * @see com.act365.sudoku.IStrategy#tryUpdateState(int,int,int,String,boolean)
+     */
+
+    public int tryUpdateState( int x , int y , int value , String reason , boolean writeState ) {
+        if( nMoves == -1 ){
+            return THREAD_EXHAUSTED ;
+        }
+        final int r = ( x * cellsInRow + y )* cellsInRow + value - 1 ;
+        if( ! isAvailable( r ) ){
+            return IState.MOVE_ALREADY_ELIMINATED ;
+        }
+        stateWrite[nMoves] = writeState ;
+        xMoves[nMoves] = x ;
+        yMoves[nMoves] = y ;
+        values[nMoves] = value - 1 ;
+        if( explain ){
+            reasons[nMoves].append( reason );
+        }
+        select( r );
+        operations[nOperations] = r ;
+        depths[nOperations++] = nMoves ;
+        ++ nMoves ;
+        return IState.MOVE_ADDED ;
+    }
+
+    /**
+     * Deselects the rows for the moves made since the given point
+     * and reinstates the rows that have been removed since then.
+     * @see com.act365.sudoku.IStrategy#unwind(int,boolean,boolean)
+     */
+
+    public boolean unwind( int newNMoves , boolean reset , boolean eliminate ){
+        if( newNMoves < 0 ){
+            return false ;
+        }
+        if( explain && reset ){
+            reasons[newNMoves].append("The move ");
+            SuDokuUtils.appendMove( reasons[newNMoves] , xMoves[newNMoves] , yMoves[newNMoves] , values[newNMoves] );
+            reasons[newNMoves].append(" leads to a contradiction.\n");
+            int i = newNMoves + 1 ;
+            while( i < nMoves ){
+                reasons[i].delete( 0 , reasons[i].length() );
+                ++ i ;
+            }
+        }
+        // Operations are undone in the reverse order to which they were applied.
+        int op ;
+        while( nOperations > 0 ){
+            op = operations[nOperations-1];
+            if( op >= 0 && depths[nOperations-1] >= newNMoves ){
+                deselect( op );
+            } else if( op < 0 && depths[nOperations-1] > newNMoves ){
+                reinstate( -1 - op );
+            } else {
+                break ;
+            }
+            -- nOperations ;
+        }
+        if( eliminate ){
+            final int r = ( xMoves[newNMoves] * cellsInRow + yMoves[newNMoves] )* cellsInRow + values[newNMoves] ;
+            if( isAvailable( r ) ){
+                remove( r );
+                operations[nOperations] = -1 - r ;
+                depths[nOperations++] = newNMoves ;
+            }
+        }
+        if( reset ){
+            int i = newNMoves ;
+            while( i < nMoves ){
+                grid.data[xMoves[i]][yMoves[i]] = 0 ;
+                ++ i ;
+            }
+        }
+        nMoves = newNMoves ;
+        return true ;
+    }
+
+    /**
+     * Returns the index of the first node in the given matrix row.
+     */
+
+    int firstNode( int r ){
+        return 1 + nColumns + 4 * r ;
+    }
+
+    /**
+     * Determines whether the given matrix row can still be selected.
+     */
+
+    boolean isAvailable( int r ){
+        if( isRemoved[r] ){
+            return false ;
+        }
+        final int node = firstNode( r );
+        return ! isCovered[column[node]] &&
+               ! isCovered[column[node+1]] &&
+               ! isCovered[column[node+2]] &&
+               ! isCovered[column[node+3]] ;
+    }
+
+    /**
+     * Removes a column header and every row that intersects it.
+     */
+
+    void cover( int c ){
+        int i , j ;
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        i = down[c];
+        while( i != c ){
+            j = right[i];
+            while( j != i ){
+                down[up[j]] = down[j];
+                up[down[j]] = up[j];
+                -- size[column[j]];
+                j = right[j];
+            }
+            i = down[i];
+        }
+        isCovered[c] = true ;
+    }
+
+    /**
+     * Reinstates a column header and every row that intersects it.
+     */
+
+    void uncover( int c ){
+        int i , j ;
+        i = up[c];
+        while( i != c ){
+            j = left[i];
+            while( j != i ){
+                ++ size[column[j]];
+                down[up[j]] = j ;
+                up[down[j]] = j ;
+                j = left[j];
+            }
+            i = up[i];
+        }
+        right[left[c]] = c ;
+        left[right[c]] = c ;
+        isCovered[c] = false ;
+    }
+
+    /**
+     * Covers each of the columns satisfied by the given row.
+     */
+
+    void select( int r ){
+        final int node = firstNode( r );
+        int k = 0 ;
+        while( k < 4 ){
+            cover( column[node+k] );
+            ++ k ;
+        }
+    }
+
+    /**
+     * Uncovers each of the columns satisfied by the given row.
+     */
+
+    void deselect( int r ){
+        final int node = firstNode( r );
+        int k = 4 ;
+        while( -- k >= 0 ){
+            uncover( column[node+k] );
+        }
+    }
+
+    /**
+     * Removes the given row from each of its columns.
+     */
+
+    void remove( int r ){
+        final int node = firstNode( r );
+        int k = 0 , j ;
+        while( k < 4 ){
+            j = node + k ;
+            down[up[j]] = down[j];
+            up[down[j]] = up[j];
+            -- size[column[j]];
+            ++ k ;
+        }
+        isRemoved[r] = true ;
+    }
+
+    /**
+     * Reinstates the given row in each of its columns.
+     */
+
+    void reinstate( int r ){
+        final int node = firstNode( r );
+        int k = 4 , j ;
+        while( -- k >= 0 ){
+            j = node + k ;
+            ++ size[column[j]];
+            down[up[j]] = j ;
+            up[down[j]] = j ;
+        }
+        isRemoved[r] = false ;
+    }
+}
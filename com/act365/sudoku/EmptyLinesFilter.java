@@ -0,0 +1,96 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+/**
+ * EmptyLinesFilter rejects any mask that leaves two rows of the same band
+ * or two columns of the same stack without a single filled cell. When
+ * two such rows are swapped, the solution grid remains valid and every
+ * clue stays where it was, so the cells of the two rows form an
+ * unavoidable set and the puzzle can't have a unique solution. The
+ * filter therefore never rejects a mask that might have yielded a puzzle.
+ */
+
+public class EmptyLinesFilter implements IMaskFilter {
+
+    final int boxesAcross ,
+              boxesDown ,
+              cellsInRow ;
+
+    /**
+     * Creates a filter for masks of the given dimensions. Rows are grouped
+     * into bands of boxesAcross rows and columns into stacks of boxesDown
+     * columns.
+     */
+
+    public EmptyLinesFilter( int boxesAcross , int boxesDown ){
+        this.boxesAcross = boxesAcross ;
+        this.boxesDown = boxesDown ;
+        cellsInRow = boxesAcross * boxesDown ;
+    }
+
+    /**
+     * Rejects the mask if two rows in a band or two columns in a stack are empty.
+     */
+
+    public boolean accept( boolean[][] mask ){
+        int i , j , nEmptyRows = 0 , nEmptyColumns = 0 ;
+        boolean emptyRow , emptyColumn ;
+        i = 0 ;
+        while( i < cellsInRow ){
+            if( i % boxesAcross == 0 ){
+                nEmptyRows = 0 ;
+            }
+            if( i % boxesDown == 0 ){
+                nEmptyColumns = 0 ;
+            }
+            emptyRow = emptyColumn = true ;
+            j = 0 ;
+            while( j < cellsInRow && ( emptyRow || emptyColumn ) ){
+                if( mask[i][j] ){
+                    emptyRow = false ;
+                }
+                if( mask[j][i] ){
+                    emptyColumn = false ;
+                }
+                ++ j ;
+            }
+            if( emptyRow && ++ nEmptyRows == 2 || emptyColumn && ++ nEmptyColumns == 2 ){
+                return false ;
+            }
+            ++ i ;
+        }
+        return true ;
+    }
+
+    /**
+     * Describes the filter.
+     */
+
+    public String toString(){
+        return "Empty lines";
+    }
+}
@@ -122,13 +122,13 @@ public class FirstAvailable extends StrategyBase implements IStrategy {
     
     /**
      * Updates state variables. 
-     * @see com.act365.sudoku.IStrategy#updateState(int,int,int,String,boolean)
+     * @see com.act365.sudoku.IStrategy#tryUpdateState(int,int,int,String,boolean)
      * @param writeState is ignored
      */    
     
-    public boolean updateState( int x , int y , int value , String reason , boolean writeState ){
+    public int tryUpdateState( int x , int y , int value , String reason , boolean writeState ){
         if( nMoves == -1 ){
-            return false ;
+            return THREAD_EXHAUSTED ;
         }
         lastMoveSuccessful = true ;
         // Store move to thread
@@ -137,7 +137,7 @@ public class FirstAvailable extends StrategyBase implements IStrategy {
         values[nMoves] = value - 1 ;
         stateWrite[nMoves] = true ;
         ++ nMoves ;
-        return true ;
+        return IState.MOVE_ADDED ;
     }
     
     /**
@@ -31,7 +31,7 @@ import java.util.* ;
 /**
  * A Grid object represents a partially-filled Su Doku grid.
  */
-@SuppressWarnings({"rawtypes","unchecked","overrides"})
+@SuppressWarnings({"rawtypes","unchecked"})
 public class Grid implements Cloneable , Serializable {
     private static final long serialVersionUID = 1222737722622307627L;
     // Constants that define the grid size. The nomenclature is taken from
@@ -138,7 +138,72 @@ public class Grid implements Cloneable , Serializable {
         SuDokuUtils.populate( data , s );        
         return this ;
     }
-    
+
+    /**
+     * Populates the grid from a single-line string, such as that created
+     * by <code>toLine()</code>, in which the cells are listed row by row.
+     * Empty cells may be represented by any character that doesn't denote
+     * a value, e.g. '.' or '0'. The grid will be resized if the length of
+     * the string doesn't match the current dimensions.
+     * @param s string of length cellsInRow*cellsInRow
+     */
+
+    public Grid populateLine( String s ) throws Exception {
+
+        int length = s.length() ,
+            newCellsInRow = (int) Math.sqrt( length ) ;
+
+        if( newCellsInRow * newCellsInRow != length ){
+            throw new Exception("The line length is not a square number");
+        }
+        if( newCellsInRow != cellsInRow ){
+            int newBoxesAcross = (int) Math.sqrt( newCellsInRow );
+            while( newCellsInRow % newBoxesAcross != 0 ){
+                -- newBoxesAcross ;
+            }
+            resize( newBoxesAcross , newCellsInRow / newBoxesAcross );
+        }
+        int i , j , cursor = 0 ;
+        i = 0 ;
+        while( i < cellsInRow ){
+            j = 0 ;
+            while( j < cellsInRow ){
+                data[i][j] = SuDokuUtils.parse( s.substring( cursor , cursor + 1 ) , SuDokuUtils.ValueFormat.ALPHANUMERIC_1 );
+                if( data[i][j] > cellsInRow ){
+                    data[i][j] = 0 ;
+                }
+                ++ cursor ;
+                ++ j ;
+            }
+            ++ i ;
+        }
+        return this ;
+    }
+
+    /**
+     * Produces a single-line representation of the grid, in which the
+     * cells are listed row by row and empty cells are marked by '.'.
+     */
+
+    public String toLine(){
+        StringBuilder sb = new StringBuilder( cellsInRow * cellsInRow );
+        int i , j ;
+        i = 0 ;
+        while( i < cellsInRow ){
+            j = 0 ;
+            while( j < cellsInRow ){
+                if( data[i][j] > 0 ){
+                    sb.append( SuDokuUtils.valueToString( data[i][j] - 1 , SuDokuUtils.ValueFormat.ALPHANUMERIC_1 ) );
+                } else {
+                    sb.append('.');
+                }
+                ++ j ;
+            }
+            ++ i ;
+        }
+        return sb.toString();
+    }
+
     /**
      * Counts the number of filled cells in the grid.
      */
@@ -185,6 +250,15 @@ public class Grid implements Cloneable , Serializable {
             nSolns = solver.getNumberOfSolutions();
             complexity = solver.getComplexity();                      
         } catch( InterruptedException e ) {
+            // Stop the solver before the strategy can be handed to another.
+            solver.interrupt();
+            while( solver.isAlive() ){
+                try {
+                    solver.join();
+                } catch( InterruptedException f ) {
+                }
+            }
+            Thread.currentThread().interrupt();
             nSolns = nUnwinds = complexity = 0 ;
         }
         return nSolns ;
@@ -243,6 +317,35 @@ public class Grid implements Cloneable , Serializable {
         }
         return true ;
     }
+
+    /**
+     * Returns a hash code consistent with equals().
+     */
+
+    public int hashCode(){
+        int h = 31 * boxesAcross + boxesDown ;
+        int r , c ;
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                h = 31 * h + data[r][c];
+                ++ c ;
+            }
+            ++ r ;
+        }
+        return h ;
+    }
+
+    /**
+     * Returns a compact key that describes the current contents of the
+     * grid. Unlike the grid itself, the key is immutable and so may be
+     * safely held in a hash set.
+     */
+
+    public GridKey toKey(){
+        return new GridKey( this );
+    }
     
     /**
      * Determines whether this grid precedes the given grid. The
@@ -148,20 +148,16 @@ public class GridContainer extends com.act365.awt.Container
     }
     
     /**
-     * Evaluates the complexity of the grid. Establishes that just a single
-     * solution exists and, if so, calculates the number of thread unwinds
-     * used to solve the problem.
-     * @return number of solutions 
+     * Evaluates the grid. Establishes whether no solution, a single
+     * solution or multiple solutions exist.
+     * @return number of solutions (2 for multiple solutions)
+     * @see UniquenessChecker
      */
         
     public int evaluate(){
     	read();
-        final int strategyType = grid.cellsInRow >= 12 ? Strategy.LEAST_CANDIDATES_HYBRID_II : Strategy.LEAST_CANDIDATES_HYBRID ; 
-        IStrategy strategy = Strategy.create( strategyType , false );
-    	int nSolns = grid.solve( strategy , 2 );
-    	strategy.reset();
     	
-    	return nSolns ;
+    	return new UniquenessChecker().check( grid );
     }
     
     /**
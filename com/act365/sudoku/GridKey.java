@@ -0,0 +1,194 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+import java.io.* ;
+import java.util.* ;
+
+/**
+ * A GridKey is a compact, immutable image of the contents of a grid that
+ * may be used as a hash key. Each cell is packed into the fewest bits
+ * that will hold its value, so that a 9x9 grid occupies six longs rather
+ * than the 81 bytes (and 10 arrays) of the grid itself. The cells are
+ * packed from the most significant bits down, so for grids of 8 to 15
+ * values the hex form of the key reads as the grid itself. Two keys are
+ * equal when, and only when, the grids from which they were taken were
+ * equal at the time.
+ */
+
+public final class GridKey {
+
+    final int boxesAcross ,
+              boxesDown ;
+
+    final long[] words ;
+
+    final int hash ;
+
+    /**
+     * Creates a key that describes the current contents of the given grid.
+     */
+
+    public GridKey( Grid grid ){
+        this( grid.boxesAcross , grid.boxesDown , grid.data );
+    }
+
+    /**
+     * Creates a key that describes the given grid contents.
+     */
+
+    GridKey( int boxesAcross , int boxesDown , byte[][] data ){
+        this.boxesAcross = boxesAcross ;
+        this.boxesDown = boxesDown ;
+        final int cellsInRow = boxesAcross * boxesDown ,
+                  bitsPerCell = 32 - Integer.numberOfLeadingZeros( cellsInRow ) ,
+                  cellsPerWord = 64 / bitsPerCell ;
+        words = new long[nWords( cellsInRow )];
+        int r , c , cell = 0 ;
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                words[cell/cellsPerWord] |= (long) data[r][c] << ( ( cellsPerWord - 1 - cell % cellsPerWord )* bitsPerCell );
+                ++ cell ;
+                ++ c ;
+            }
+            ++ r ;
+        }
+        hash = 31 * ( 31 * boxesAcross + boxesDown ) + Arrays.hashCode( words );
+    }
+
+    /**
+     * Returns the number of words needed to pack a grid with the given
+     * number of cells per row.
+     */
+
+    static int nWords( int cellsInRow ){
+        final int cellsPerWord = 64 /( 32 - Integer.numberOfLeadingZeros( cellsInRow ) );
+        return ( cellsInRow * cellsInRow + cellsPerWord - 1 )/ cellsPerWord ;
+    }
+
+    /**
+     * Creates a key from packed words, as written by <code>write()</code>.
+     */
+
+    GridKey( int boxesAcross , int boxesDown , long[] words ){
+        this.boxesAcross = boxesAcross ;
+        this.boxesDown = boxesDown ;
+        this.words = words ;
+        hash = 31 * ( 31 * boxesAcross + boxesDown ) + Arrays.hashCode( words );
+    }
+
+    /**
+     * Writes the key in binary form.
+     */
+
+    public void write( DataOutput out ) throws IOException {
+        out.writeByte( boxesAcross );
+        out.writeByte( boxesDown );
+        out.writeInt( words.length );
+        int i = 0 ;
+        while( i < words.length ){
+            out.writeLong( words[i++] );
+        }
+    }
+
+    /**
+     * Reads a key written by <code>write()</code>.
+     * @throws IOException if the key is malformed
+     */
+
+    public static GridKey read( DataInput in ) throws IOException {
+        final int boxesAcross = in.readUnsignedByte() ,
+                  boxesDown = in.readUnsignedByte() ,
+                  nWords = in.readInt();
+        if( boxesAcross == 0 || boxesDown == 0 || nWords != nWords( boxesAcross * boxesDown ) ){
+            throw new IOException("Malformed grid key");
+        }
+        long[] words = new long[nWords];
+        int i = 0 ;
+        while( i < words.length ){
+            words[i++] = in.readLong();
+        }
+        return new GridKey( boxesAcross , boxesDown , words );
+    }
+
+    /**
+     * Tests for equality.
+     */
+
+    public boolean equals( Object obj ){
+        if( !( obj instanceof GridKey ) ){
+            return false ;
+        }
+        GridKey key = (GridKey) obj ;
+        return hash == key.hash &&
+               boxesAcross == key.boxesAcross &&
+               boxesDown == key.boxesDown &&
+               Arrays.equals( words , key.words );
+    }
+
+    /**
+     * Returns a hash code consistent with equals().
+     */
+
+    public int hashCode(){
+        return hash ;
+    }
+
+    /**
+     * Writes the key as a string of hex digits prefixed by the grid
+     * dimensions, e.g. "3x3:...". The string is stable across runs, so
+     * the key of a canonical form may serve as a puzzle identifier.
+     */
+
+    public String toString(){
+        StringBuilder sb = new StringBuilder();
+        sb.append( boxesAcross );
+        sb.append('x');
+        sb.append( boxesDown );
+        sb.append(':');
+        int i = 0 ;
+        while( i < words.length ){
+            String word = Long.toHexString( words[i] );
+            int j = word.length();
+            while( j ++ < 16 ){
+                sb.append('0');
+            }
+            sb.append( word );
+            ++ i ;
+        }
+        // Drop the unused digits at the end of the last word. When 64 isn't
+        // a multiple of the cell size, the unused bits at the top of each
+        // word count towards the digits that must be kept.
+        final int cellsInRow = boxesAcross * boxesDown ,
+                  bitsPerCell = 32 - Integer.numberOfLeadingZeros( cellsInRow ) ,
+                  cellsPerWord = 64 / bitsPerCell ,
+                  cellsInLastWord = cellsInRow * cellsInRow - ( words.length - 1 )* cellsPerWord ;
+        sb.setLength( sb.length() - 16 + ( 64 - cellsPerWord * bitsPerCell + cellsInLastWord * bitsPerCell + 3 )/ 4 );
+        return sb.toString();
+    }
+}
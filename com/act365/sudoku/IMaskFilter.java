@@ -0,0 +1,51 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+/**
+ * A mask filter is a cheap test that is applied to each mask before a
+ * solver is spent upon it. A filter should only reject a mask when it
+ * can tell from the pattern of filled cells alone that the mask won't
+ * yield a puzzle with a unique solution - or, for a heuristic filter,
+ * that it is unlikely to do so.
+ */
+
+public interface IMaskFilter {
+
+    /**
+     * Tests a mask.
+     * @param mask mask to be tested, where true marks a filled cell
+     * @return whether the mask should be passed to a solver
+     */
+
+    public boolean accept( boolean[][] mask );
+
+    /**
+     * Returns a short description of the filter, to be used in reports.
+     */
+
+    public String toString();
+}
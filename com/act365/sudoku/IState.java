@@ -32,6 +32,14 @@ package com.act365.sudoku;
 
 public interface IState {
 
+    /**
+     * Status values returned by tryAddMove().
+     */
+
+    public final static int MOVE_ADDED = 0 ,
+                            MOVE_ALREADY_ELIMINATED = 1 ,
+                            MOVE_CANT_BE_ELIMINATED = 2 ;
+
     /**
      * Sets up the state grid and its thread.
      */
@@ -58,6 +66,16 @@ public interface IState {
     
     public void addMove( int x , int y , int v ) throws MoveException ;
     
+    /**
+     * Updates the state grid to account for the move (x,y):=v but,
+     * unlike addMove(), reports a contradiction with a status value
+     * rather than an exception. The state grid might have been partly
+     * updated when a contradiction is reported.
+     * @return MOVE_ADDED, MOVE_ALREADY_ELIMINATED or MOVE_CANT_BE_ELIMINATED
+     */
+    
+    public int tryAddMove( int x , int y , int v );
+    
     /**
      * Updates the state grid to account for the fact that the 
      * move (x,y):=v has been eliminated as a possibility.
@@ -65,6 +83,13 @@ public interface IState {
 
     public void eliminateMove( int x , int y , int v );
     
+    /**
+     * Returns the number of bytes that have been allocated in order
+     * to store the thread.
+     */
+    
+    public long getThreadFootprint();
+    
     /**
      * Produces a string representation of the state grid.
      */
@@ -37,6 +37,13 @@ package com.act365.sudoku;
 
 public interface IStrategy {
 	
+    /**
+     * Status returned by tryUpdateState() when the thread has been unwound
+     * beyond its start, in which case updateState() would return false.
+     */
+
+    public final static int THREAD_EXHAUSTED = -1 ;
+	
 	/**
 	 * Sets up the strategy state variables to solve the given grid.
      * @param grid grid to be solved
@@ -93,6 +100,20 @@ public interface IStrategy {
 
     public boolean updateState( int x , int y , int value , String reason , boolean writeState ) throws Exception ;
     
+    /**
+     * Tells the strategy to update its internal state variables to account
+     * for the move (x,y):= value. A move that contradicts the state variables
+     * is reported with a status value rather than an exception, which makes
+     * the call cheap enough to be used for routine contradictions in a search.
+     * A rejected move might already have been added to the thread, so it
+     * should be followed by an unwind.
+     * @param writeState whether the updated state should be written to the stack 
+     * @return IState.MOVE_ADDED, IState.MOVE_ALREADY_ELIMINATED, 
+     * IState.MOVE_CANT_BE_ELIMINATED or THREAD_EXHAUSTED
+     */
+
+    public int tryUpdateState( int x , int y , int value , String reason , boolean writeState );
+    
     /**
      * Unwinds the most recent move and reverts the state grids.
      * @param newNMoves the point to which the stack should unwind
@@ -28,6 +28,11 @@ package com.act365.sudoku;
 /**
  * InvulnerableState records the number of cells that would remain
  * unresolved for each given move (ie each cell/value pair).
+ * The thread is either stored as a stack of snapshots or, when an
+ * undo log is used, as a list of the individual changes.
+ * Snapshots are allocated on demand, so that memory use follows the
+ * depth of the search rather than the number of cells on the grid.
+ * @see UndoLog
  */
 
 public class InvulnerableState implements IState {
@@ -52,11 +57,47 @@ public class InvulnerableState implements IState {
     
     byte[][][][] threadNInvulnerable ;
     
+    UndoLog undoLog ;
+    
+    transient long threadFootprint ;
+    
     // Temporary vars used to store partially-calculated 
     // values for efficiency reasons.
     
     transient int lowerX , upperX , lowerY , upperY ;
     
+    /**
+     * Creates an InvulnerableState instance that stores the thread as snapshots.
+     */
+    
+    public InvulnerableState(){
+        this( false );
+    }
+    
+    /**
+     * Creates an InvulnerableState instance.
+     * @param useUndoLog whether the thread should be stored as an undo log rather than as snapshots
+     */
+    
+    public InvulnerableState( boolean useUndoLog ){
+        if( useUndoLog ){
+            undoLog = new UndoLog();
+        }
+    }
+    
+    /**
+     * Chooses whether the thread should be stored as an undo log. A change
+     * takes effect at the next call to setup().
+     * @param useUndoLog whether the thread should be stored as an undo log rather than as snapshots
+     */
+    
+    public void setUndoLog( boolean useUndoLog ){
+        if( useUndoLog != undoLog instanceof UndoLog ){
+            undoLog = useUndoLog ? new UndoLog() : null ;
+            cellsInRow = 0 ;
+        }
+    }
+    
     /**
      * Sets the state grid to the appropriate size.
      * @see com.act365.sudoku.IState#setup(int,int)
@@ -77,8 +118,11 @@ public class InvulnerableState implements IState {
             eliminated = new boolean[cellsInRow][cellsInRow][cellsInRow];
             nInvulnerable = new byte[cellsInRow][cellsInRow][cellsInRow];
     
-            threadEliminated = new boolean[cellsInRow*cellsInRow][cellsInRow][cellsInRow][cellsInRow];
-            threadNInvulnerable = new byte[cellsInRow*cellsInRow][cellsInRow][cellsInRow][cellsInRow];
+            if( ! ( undoLog instanceof UndoLog ) ){
+                threadEliminated = new boolean[cellsInRow*cellsInRow][][][];
+                threadNInvulnerable = new byte[cellsInRow*cellsInRow][][][];
+                threadFootprint = 0 ;
+            }
         } else {
             i = 0 ;
             while( i < cellsInRow ){
@@ -95,6 +139,9 @@ public class InvulnerableState implements IState {
                 ++ i ;
             }
         }
+        if( undoLog instanceof UndoLog ){
+            undoLog.setup( cellsInRow * cellsInRow );
+        }
 	}
 
     /**
@@ -103,6 +150,15 @@ public class InvulnerableState implements IState {
      */
           
 	public void pushState( int nMoves ) {
+        if( undoLog instanceof UndoLog ){
+            undoLog.mark( nMoves );
+            return ;
+        }
+        if( threadEliminated[nMoves] == null ){
+            threadEliminated[nMoves] = new boolean[cellsInRow][cellsInRow][cellsInRow];
+            threadNInvulnerable[nMoves] = new byte[cellsInRow][cellsInRow][cellsInRow];
+            threadFootprint += 2 * cellsInRow * cellsInRow * cellsInRow ;
+        }
         int i, j , v ;
         i = 0 ;
         while( i < cellsInRow ){
@@ -126,6 +182,24 @@ public class InvulnerableState implements IState {
      */
           
 	public void popState(int nMoves ) {
+        if( undoLog instanceof UndoLog ){
+            final int mark = undoLog.getMark( nMoves ) ,
+                      nCells = cellsInRow * cellsInRow * cellsInRow ;
+            int location ;
+            while( undoLog.size > mark ){
+                location = undoLog.locations[-- undoLog.size];
+                if( location < nCells ){
+                    eliminated[location/cellsInRow/cellsInRow][location/cellsInRow%cellsInRow][location%cellsInRow] = undoLog.oldValues[undoLog.size] != 0 ;
+                } else {
+                    location -= nCells ;
+                    nInvulnerable[location/cellsInRow/cellsInRow][location/cellsInRow%cellsInRow][location%cellsInRow] = (byte) undoLog.oldValues[undoLog.size];
+                }
+            }
+            return ;
+        }
+        if( threadEliminated[nMoves] == null ){
+            return ;
+        }
         int i , j , v ;
         i = 0 ;
         while( i < cellsInRow ){
@@ -150,10 +224,20 @@ public class InvulnerableState implements IState {
      */
 
 	public void addMove(int x, int y, int value ) throws MoveException {
+        MoveException.check( tryAddMove( x , y , value ) , x , y , value );
+    }
+
+    /**
+     * Adds the move (x,y):=v to the state grid without throwing an exception.
+     * @param value is in the range [0,cellsInRow), not [1,cellsInRow]. 
+     * @see com.act365.sudoku.IState#tryAddMove(int, int, int)
+     */
+
+	public int tryAddMove(int x, int y, int value ) {
         int i , j , v , cx , cy ;
         // Check that it's a valid candidate.
         if( eliminated[value][x][y] ){
-            throw new MoveAlreadyEliminatedException( x , y , value );
+            return MOVE_ALREADY_ELIMINATED ;
         }
         // Calc temp values.
         lowerX = ( x / boxesAcross )* boxesAcross ;
@@ -163,7 +247,7 @@ public class InvulnerableState implements IState {
         // Update nInvulnerable for (x,y).
         v = 0 ;
         while( v < cellsInRow ){
-            nInvulnerable[v][x][y] = maxScore ;
+            setNInvulnerable( v , x , y , maxScore );
             ++ v ; 
         }
         // Update nInvulnerable for the domain of (x,y).
@@ -180,9 +264,9 @@ public class InvulnerableState implements IState {
                     continue ;
                 }
                 if( v == value ){
-                    nInvulnerable[v][i][y] = maxScore ;
+                    setNInvulnerable( v , i , y , maxScore );
                 } else {
-                    ++ nInvulnerable[v][i][y];
+                    setNInvulnerable( v , i , y , nInvulnerable[v][i][y] + 1 );
                 }
             }
             // Shared row
@@ -192,9 +276,9 @@ public class InvulnerableState implements IState {
                     continue ;
                 }
                 if( v == value ){
-                    nInvulnerable[v][x][j] = maxScore ;
+                    setNInvulnerable( v , x , j , maxScore );
                 } else {
-                    ++ nInvulnerable[v][x][j];
+                    setNInvulnerable( v , x , j , nInvulnerable[v][x][j] + 1 );
                 }
             }
             // Shared subgrid
@@ -209,16 +293,16 @@ public class InvulnerableState implements IState {
                         continue ;
                     }
                     if( v == value ){
-                        nInvulnerable[v][i][j] = maxScore ;
+                        setNInvulnerable( v , i , j , maxScore );
                     } else {
-                        ++ nInvulnerable[v][i][j];
+                        setNInvulnerable( v , i , j , nInvulnerable[v][i][j] + 1 );
                     }
                 }
             }
             ++ v ;
         }
         // Update nInvulnerable for the entire grid.
-        int lowerCX , upperCX , lowerCY , upperCY ;
+        int lowerCX , upperCX , lowerCY , upperCY , count ;
         cx = 0 ;
         while( cx < cellsInRow ){
             if( cx == x ){
@@ -235,6 +319,7 @@ public class InvulnerableState implements IState {
                 upperCX = ( cx / boxesAcross + 1 )* boxesAcross ;
                 lowerCY = cy / boxesDown * boxesDown ;
                 upperCY = ( cy / boxesDown + 1 )* boxesDown ;
+                count = 0 ;
                 i = 0 ;
                 while( i < cellsInRow ){
                     if( i == x ){
@@ -242,7 +327,7 @@ public class InvulnerableState implements IState {
                         while( j < cellsInRow ){
                             if( ! eliminated[value][i][j] ){
                                 if( i == cx || j == cy || lowerCX <= i && i < upperCX && lowerCY <= j && j < upperCY ){
-                                    ++ nInvulnerable[value][cx][cy];
+                                    ++ count ;
                                 }
                             }
                             ++ j ;
@@ -252,18 +337,21 @@ public class InvulnerableState implements IState {
                         while( j < upperY ){
                             if( ! eliminated[value][i][j] ){
                                 if( i == cx || j == cy || lowerCX <= i && i < upperCX && lowerCY <= j && j < upperCY ){
-                                    ++ nInvulnerable[value][cx][cy];
+                                    ++ count ;
                                 }
                             }
                             ++ j ;
                         }
                     } else if( ! eliminated[value][i][y] ){
                         if( i == cx || y == cy || lowerCX <= i && i < upperCX && lowerCY <= y && y < upperCY ){
-                            ++ nInvulnerable[value][cx][cy];
+                            ++ count ;
                         }
                     }
                     ++ i ;
                 }                
+                if( count > 0 ){
+                    setNInvulnerable( value , cx , cy , nInvulnerable[value][cx][cy] + count );
+                }
                 ++ cy ;
             }
             ++ cx ;
@@ -273,7 +361,7 @@ public class InvulnerableState implements IState {
         i = 0 ;
         while( i < cellsInRow ){
             if( i != value && ! eliminated[i][x][y] ){
-                eliminated[i][x][y] = true ;
+                eliminate( i , x , y );
             }
             ++ i ;
         }
@@ -281,7 +369,7 @@ public class InvulnerableState implements IState {
         j = 0 ;
         while( j < cellsInRow ){
             if( j != y && ! eliminated[value][x][j] ){
-                eliminated[value][x][j] = true ;
+                eliminate( value , x , j );
             }
             ++ j ;
         }
@@ -289,7 +377,7 @@ public class InvulnerableState implements IState {
         i = 0 ;
         while( i < cellsInRow ){
             if( i != x && ! eliminated[value][i][y] ){
-                eliminated[value][i][y] = true ;
+                eliminate( value , i , y );
             }
             ++ i ;
         }
@@ -305,10 +393,11 @@ public class InvulnerableState implements IState {
                     continue ;
                 }
                 if( ! eliminated[value][i][j] ){
-                    eliminated[value][i][j] = true ;
+                    eliminate( value , i , j );
                 }
             }
         }
+        return MOVE_ADDED ;
 	}
 
     /**
@@ -330,10 +419,10 @@ public class InvulnerableState implements IState {
             j = 0 ;
             while( j < cellsInRow ){
                 if( i == x && j == y ){
-                    eliminated[value][x][y] = true ;
-                    nInvulnerable[value][i][j] = maxScore ;
+                    eliminate( value , x , y );
+                    setNInvulnerable( value , i , j , maxScore );
                 } else if( ! eliminated[value][i][j] && inDomain( partial , y , j ) ){
-                    ++ nInvulnerable[value][i][j];
+                    setNInvulnerable( value , i , j , nInvulnerable[value][i][j] + 1 );
                 }
                 ++ j ;
             }
@@ -341,6 +430,40 @@ public class InvulnerableState implements IState {
         }
 	}
     
+    /**
+     * Returns the number of bytes allocated for snapshots or, when an
+     * undo log is used, the peak size of the log.
+     * @see com.act365.sudoku.IState#getThreadFootprint()
+     */
+    
+    public long getThreadFootprint(){
+        return undoLog instanceof UndoLog ? 12L * undoLog.getMaxSize() : threadFootprint ;
+    }
+    
+    /**
+     * Eliminates the move (x,y):=v and records the change in the 
+     * undo log where one is used.
+     */
+    
+    void eliminate( int v , int x , int y ){
+        if( undoLog instanceof UndoLog ){
+            undoLog.record( ( v * cellsInRow + x )* cellsInRow + y , eliminated[v][x][y] ? 1 : 0 );
+        }
+        eliminated[v][x][y] = true ;
+    }
+    
+    /**
+     * Sets the invulnerability count for the move (x,y):=v and records 
+     * the change in the undo log where one is used.
+     */
+    
+    void setNInvulnerable( int v , int x , int y , int n ){
+        if( undoLog instanceof UndoLog ){
+            undoLog.record( cellsInRow * cellsInRow * cellsInRow + ( v * cellsInRow + x )* cellsInRow + y , nInvulnerable[v][x][y] );
+        }
+        nInvulnerable[v][x][y] = (byte) n ;
+    }
+    
     /** 
      * The next two functions split inDomain(), which calculates whether 
      * (p,q) is in the domain of (x,y), i.e. whether it shares a column, 
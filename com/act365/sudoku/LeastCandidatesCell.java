@@ -72,6 +72,15 @@ public class LeastCandidatesCell extends StrategyBase implements IStrategy {
         super.setup( grid );
     }
     
+    /**
+     * Chooses whether the state grid should use an undo log.
+     * @see com.act365.sudoku.StrategyBase#setUndoLog(boolean)
+     */
+    
+    public void setUndoLog( boolean useUndoLog ){
+        ((CellState) state).setUndoLog( useUndoLog );
+    }
+    
 	/** 
 	 * Finds the cells that have the least number of candidates. 
 	 * @see com.act365.sudoku.IStrategy#findCandidates()
@@ -80,7 +89,8 @@ public class LeastCandidatesCell extends StrategyBase implements IStrategy {
 	public int findCandidates() {
         CellState cellState = (CellState) state ;
 		// Find the unpopulated cells with the smallest number of candidates.		
-		int i , j , k , maxEliminated = -1 ;
+		int i , j , k , nEliminated , maxEliminated = -1 ;
+        long cellCandidates ;
         StringBuilder sb ;
         nCandidates = 0 ;
 		i = 0 ;
@@ -88,17 +98,17 @@ public class LeastCandidatesCell extends StrategyBase implements IStrategy {
 		while( i < grid.cellsInRow ){
 			j = 0 ;
 			while( j < grid.cellsInRow ){
-                if( cellState.nEliminated[i][j] == grid.cellsInRow ){
+                if( ( nEliminated = cellState.countEliminated( i , j ) ) == grid.cellsInRow ){
                     score = 0 ;
                     return ( nCandidates = 0 );
                 } else if( grid.data[i][j] > 0 ){
-                } else if( ! findMany && cellState.nEliminated[i][j] == grid.cellsInRow - 1 ){
+                } else if( ! findMany && nEliminated == grid.cellsInRow - 1 ){
                     nCandidates = 1 ;
                     maxEliminated = grid.cellsInRow - 1 ;
                     break findMaxEliminated ;
-				} else if( cellState.nEliminated[i][j] > maxEliminated ){
+				} else if( nEliminated > maxEliminated ){
 					nCandidates = 1 ;
-					maxEliminated = cellState.nEliminated[i][j];
+					maxEliminated = nEliminated ;
 				}
 				++ j ;
 			}
@@ -113,36 +123,35 @@ public class LeastCandidatesCell extends StrategyBase implements IStrategy {
 		while( i < grid.cellsInRow ){
 			j = 0 ;
 			while( j < grid.cellsInRow ){
-				if( grid.data[i][j] == 0 && cellState.nEliminated[i][j] == maxEliminated ){
-                    k = 0 ;
-                    while( k < grid.cellsInRow ){
-                        if( ! cellState.eliminated[i][j][k] ){
-                            xCandidates[nCandidates] = i ;
-                            yCandidates[nCandidates] = j ;
-                            valueCandidates[nCandidates] = (byte)( k + 1 );
-                            if( explain ){
-                                sb = new StringBuilder();
-                                sb.append("The value ");
-                                SuDokuUtils.appendValue( sb , k );
-                                sb.append(" is ");
-                                if( score > 1 ){
-                                    sb.append("one of ");
-                                    sb.append( score );
-                                    sb.append(" candidates ");
-                                } else {
-                                    sb.append("the only candidate ");
-                                }
-                                sb.append("for the cell ");
-                                SuDokuUtils.appendCell( sb , i , j );
-                                sb.append(".\n");
-                                reasonCandidates[nCandidates] = sb ;
-                            }
-                            ++ nCandidates ;
-                            if( ! findMany ){
-                                return nCandidates ;
+				if( grid.data[i][j] == 0 && cellState.countEliminated( i , j ) == maxEliminated ){
+                    cellCandidates = cellState.getCandidates( i , j );
+                    while( cellCandidates != 0 ){
+                        k = Long.numberOfTrailingZeros( cellCandidates );
+                        cellCandidates &= cellCandidates - 1 ;
+                        xCandidates[nCandidates] = i ;
+                        yCandidates[nCandidates] = j ;
+                        valueCandidates[nCandidates] = (byte)( k + 1 );
+                        if( explain ){
+                            sb = new StringBuilder();
+                            sb.append("The value ");
+                            SuDokuUtils.appendValue( sb , k );
+                            sb.append(" is ");
+                            if( score > 1 ){
+                                sb.append("one of ");
+                                sb.append( score );
+                                sb.append(" candidates ");
+                            } else {
+                                sb.append("the only candidate ");
                             }
+                            sb.append("for the cell ");
+                            SuDokuUtils.appendCell( sb , i , j );
+                            sb.append(".\n");
+                            reasonCandidates[nCandidates] = sb ;
+                        }
+                        ++ nCandidates ;
+                        if( ! findMany ){
+                            return nCandidates ;
                         }
-                        ++ k ;
                     }
                 }
 				++ j ;
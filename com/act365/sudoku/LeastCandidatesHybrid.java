@@ -25,6 +25,9 @@
 
 package com.act365.sudoku ;
 
+import java.text.DecimalFormat ;
+import java.util.Arrays ;
+
 /**
  * LeastCandidatesHybrid combines the Least Candidates Cell and Least 
  * Candidates Number strategies. 
@@ -61,6 +64,35 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     
 //    enum LinkBoolean { DONT_KNOW , FALSE , TRUE };
     
+    // Elimination rules, in their fixed order of application.
+    
+    final static int RULE_LOCKED_SECTOR_CANDIDATES    = 0 ,
+                     RULE_DISJOINT_SUBSETS            = 1 ,
+                     RULE_TWO_SECTOR_DISJOINT_SUBSETS = 2 ,
+                     RULE_SINGLE_VALUED_CHAINS        = 3 ,
+                     RULE_MANY_VALUED_CHAINS          = 4 ,
+                     RULE_NISHIO                      = 5 ,
+                     RULE_ADJACENT_SECTOR_PERMUTATION = 6 ,
+                     nRules                           = 7 ;
+    
+    final static String[] ruleNames = { "Locked Sector Candidates" ,
+                                        "Disjoint Subsets" ,
+                                        "Two-Sector Disjoint Subsets" ,
+                                        "Single-Valued Chains" ,
+                                        "Many-Valued Chains" ,
+                                        "Nishio" ,
+                                        "Adjacent Sector Permutation" };
+    
+    // Adaptive scheduling parameters. A rule is rated once it has been
+    // applied minRuleTrials times. A rated rule whose yield, i.e. its
+    // eliminations per unit time, falls below ruleSkipRatio times the best
+    // yield is only applied on one consultation in ruleRetrialPeriod.
+    
+    final static int minRuleTrials = 16 ,
+                     ruleRetrialPeriod = 16 ;
+    
+    final static double ruleSkipRatio = 1. / 64 ;
+    
     // Members
     
     LeastCandidatesNumber lcn ;
@@ -105,7 +137,9 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         adjacentSectorPermutationCalls ,
         adjacentSectorPermutationEliminations ,
         nGuesses ,
-        nEliminated ;
+        nEliminated ,
+        capacityExhausted ,
+        ruleTimeouts ;
     
     short nChains ;
     
@@ -117,6 +151,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
 
     transient int linkedValuesSize , linkedCellsSize ;
     
+    // Whether a contradiction has been found by the current search.
+    
+    transient boolean badGridState ;
+    
     transient int[] x , y , linkedValues , linkedCells ;
     
     transient byte[] chainR0 , 
@@ -143,6 +181,22 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     transient short[] chainTableIndices ,
                       linkCategory ;
 
+    // Chains indexed by the cells at their ends, in order of creation.
+
+    transient short[][] cellChains ;
+
+    transient int[] nCellChains ;
+
+    transient int nIndexedChains ;
+
+    // Chains hashed by their ends, so that recordChain() need only compare
+    // a new chain with the chains that share its ends and values.
+
+    transient short[] chainHashHead ,
+                      chainHashNext ;
+
+    transient int nHashedChains ;
+
     transient boolean[][] isLinkAscending ;
     
     transient boolean[] isCellUsed ,
@@ -161,12 +215,59 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     
     transient int[][][] sectorOffsetCount ;
     
-    // Max array dimensions
+    // Default limits on the array dimensions. The chain indices are held
+    // as shorts, so no limit may exceed Short.MAX_VALUE.
     
-    public final static short maxChains       = 30000 ,
-                              maxTabledChains = 2500 ,
-                              maxChainLength  = 15 ,
-                              maxSectorPerms  = 500 ;
+    public final static short defaultMaxChains       = 30000 ,
+                              defaultMaxTabledChains = 2500 ,
+                              defaultMaxChainLength  = 15 ,
+                              defaultMaxSectorPerms  = 500 ;
+
+    // Initial array dimensions. The arrays grow by doubling up to the limits.
+
+    final static short initialChains       = 1024 ,
+                       initialTabledChains = 16 ,
+                       initialSectorPerms  = 32 ;
+
+    // Whether the rules should be reordered by their yields. The yields
+    // are measured for the current grid size and survive calls to setup()
+    // for grids of the same size.
+
+    boolean adaptiveScheduling ;
+
+    transient int[] ruleOrder ,
+                    rankedRules ,
+                    ruleCalls ,
+                    ruleConsultations ;
+
+    transient long[] ruleEliminations ,
+                     ruleNanos ;
+
+    transient double[] ruleYield ;
+
+    transient boolean[] isRuleRated ,
+                        isRuleSkipped ;
+
+    // The time limit for each application of a rule, in nanoseconds
+    // (0 for no limit), and the deadline for the current application.
+
+    long ruleTimeLimit ;
+
+    transient long ruleDeadline ;
+
+    transient boolean isRuleTimed ,
+                      isRuleTimedOut ;
+
+    int maxChains       = defaultMaxChains ,
+        maxTabledChains = defaultMaxTabledChains ,
+        maxChainLength  = defaultMaxChainLength ,
+        maxSectorPerms  = defaultMaxSectorPerms ;
+
+    transient int chainCapacity ;
+
+    // Whether the limits have changed since the arrays were allocated.
+
+    transient boolean limitsChanged ;
     
     /**
      * Sets up a LeastCandidatesHybrid II strategy with an optional random element.
@@ -197,6 +298,96 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         useDisjointSubsets = useLockedSectorCandidates = updateInvulnerableState ;
         useTwoSectorDisjointSubsets = useSingleValuedChains = useManyValuedChains = useNishio = useAdjacentSectorPermutation = useAllLogicalMethods ;
         useGuesses = true ;
+        ruleOrder = new int[nRules];
+        rankedRules = new int[nRules];
+        ruleCalls = new int[nRules];
+        ruleConsultations = new int[nRules];
+        ruleEliminations = new long[nRules];
+        ruleNanos = new long[nRules];
+        ruleYield = new double[nRules];
+        isRuleRated = new boolean[nRules];
+        isRuleSkipped = new boolean[nRules];
+        resetRuleSchedule();
+    }
+
+    /**
+     * Sets the limits on the number of chains, the number of chains tabled
+     * against each cell or sector position, the length of an explained
+     * chain and the number of permutations of a sector. The arrays start
+     * small and grow on demand up to the limits, each of which is capped at
+     * Short.MAX_VALUE. Whenever a limit is reached, the work is truncated
+     * and capacityExhausted is incremented. The new limits apply from the
+     * next call to setup().
+     */
+
+    public void setCapacityLimits( int maxChains ,
+                                   int maxTabledChains ,
+                                   int maxChainLength ,
+                                   int maxSectorPerms ){
+        this.maxChains = Math.max( 2 , Math.min( maxChains , Short.MAX_VALUE ) );
+        this.maxTabledChains = Math.max( 1 , Math.min( maxTabledChains , Short.MAX_VALUE ) );
+        this.maxChainLength = Math.max( 1 , Math.min( maxChainLength , Short.MAX_VALUE ) );
+        this.maxSectorPerms = Math.max( 1 , Math.min( maxSectorPerms , Short.MAX_VALUE ) );
+        limitsChanged = true ;
+    }
+
+    /**
+     * Determines whether the elimination rules should be applied in their
+     * fixed order, which makes the solution path (and hence any grading)
+     * reproducible, or whether they should be reordered by their measured
+     * yields. In adaptive mode the rules that rarely pay off for the
+     * current grid size are also skipped, except for an occasional retrial,
+     * unless guesses are disallowed, in which case a skipped rule might
+     * leave a solvable grid unsolved.
+     */
+
+    public void setAdaptiveScheduling( boolean adaptiveScheduling ){
+        this.adaptiveScheduling = adaptiveScheduling ;
+        resetRuleSchedule();
+    }
+
+    /**
+     * Sets a time limit for each application of an elimination rule. A rule
+     * that runs out of time, or that is still running when the deadline for
+     * the solve passes, abandons its search and is treated as having made
+     * no progress, so the strategy will fall back on a guess if no other
+     * rule succeeds. Any eliminations already made by the rule stand, since
+     * each of them is sound. The number of abandoned rules is counted in
+     * ruleTimeouts.
+     * @param ruleTimeLimit time limit in milliseconds (0 for no limit)
+     */
+
+    public void setRuleTimeLimit( long ruleTimeLimit ){
+        this.ruleTimeLimit = 1000000 * ruleTimeLimit ;
+    }
+
+    /**
+     * Chooses whether the state grids of the inner strategies and the
+     * Invulnerable state grid should use an undo log.
+     * @see com.act365.sudoku.StrategyBase#setUndoLog(boolean)
+     */
+
+    @Override public void setUndoLog( boolean useUndoLog ){
+        lcn.setUndoLog( useUndoLog );
+        lcc.setUndoLog( useUndoLog );
+        if( invulnerableState instanceof InvulnerableState ){
+            invulnerableState.setUndoLog( useUndoLog );
+        }
+    }
+
+    /**
+     * Restores the fixed rule order and discards the measured yields.
+     */
+
+    void resetRuleSchedule(){
+        int i = 0 ;
+        while( i < nRules ){
+            ruleOrder[i] = i ;
+            ruleCalls[i] = ruleConsultations[i] = 0 ;
+            ruleEliminations[i] = ruleNanos[i] = 0 ;
+            isRuleRated[i] = isRuleSkipped[i] = false ;
+            ++ i ;
+        }
     }
 
     /**
@@ -242,11 +433,14 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 linearSystemState.pushState( 0 );
             }
 */                
-            eliminatedX = new byte[2*grid.cellsInRow];
-            eliminatedY = new byte[2*grid.cellsInRow];
-            eliminatedValues = new byte[2*grid.cellsInRow];
+            if( resize ){
+                eliminatedX = new byte[2*grid.cellsInRow];
+                eliminatedY = new byte[2*grid.cellsInRow];
+                eliminatedValues = new byte[2*grid.cellsInRow];
+            }
         }
-        if( useDisjointSubsets ){
+        // The working arrays are only reallocated when the grid is resized.
+        if( useDisjointSubsets && resize ){
             x = new int[grid.cellsInRow];
             y = new int[grid.cellsInRow];
             linkedValues = new int[grid.cellsInRow];
@@ -258,40 +452,51 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         }
         if( useSingleValuedChains || useManyValuedChains ){
             reportChains = true ;
-            chainR0 = new byte[maxChains];
-            chainC0 = new byte[maxChains];
-            chainR1 = new byte[maxChains];
-            chainC1 = new byte[maxChains];
-            chainV0 = new byte[maxChains];
-            chainV1 = new byte[maxChains];
-            chainLength = new byte[maxChains];
-            chainOtherEnd0 = new byte[maxChains][2];
-            chainOtherEnd1 = new byte[maxChains][2];
-            linkCategory = new short[maxChains];
+        }
+        if( ( useSingleValuedChains || useManyValuedChains ) && ( resize || limitsChanged ) ){
+            chainCapacity = Math.min( initialChains , maxChains );
+            chainR0 = new byte[chainCapacity];
+            chainC0 = new byte[chainCapacity];
+            chainR1 = new byte[chainCapacity];
+            chainC1 = new byte[chainCapacity];
+            chainV0 = new byte[chainCapacity];
+            chainV1 = new byte[chainCapacity];
+            chainLength = new byte[chainCapacity];
+            chainOtherEnd0 = new byte[chainCapacity][2];
+            chainOtherEnd1 = new byte[chainCapacity][2];
+            linkCategory = new short[chainCapacity];
+            cellChains = new short[grid.cellsInRow*grid.cellsInRow][16];
+            nCellChains = new int[grid.cellsInRow*grid.cellsInRow];
+            chainHashHead = new short[4*Integer.highestOneBit( maxChains )];
+            chainHashNext = new short[chainCapacity];
+            Arrays.fill( chainHashHead , (short) -1 );
+            nHashedChains = 0 ;
                 
             chainSectorTableSize = new short[3*grid.cellsInRow][grid.cellsInRow][2];
             chainCellTableSize = new short[grid.cellsInRow][grid.cellsInRow][2];
-            chainSectorTableEnd0 = new boolean[3*grid.cellsInRow][grid.cellsInRow][2][maxTabledChains];
-            chainCellTableEnd0 = new boolean[grid.cellsInRow][grid.cellsInRow][2][maxTabledChains];
-            chainSectorTableIndex = new short[3*grid.cellsInRow][grid.cellsInRow][2][maxTabledChains];
-            chainCellTableIndex = new short[grid.cellsInRow][grid.cellsInRow][2][maxTabledChains];
+            chainSectorTableEnd0 = new boolean[3*grid.cellsInRow][grid.cellsInRow][2][Math.min( initialTabledChains , maxTabledChains )];
+            chainCellTableEnd0 = new boolean[grid.cellsInRow][grid.cellsInRow][2][Math.min( initialTabledChains , maxTabledChains )];
+            chainSectorTableIndex = new short[3*grid.cellsInRow][grid.cellsInRow][2][Math.min( initialTabledChains , maxTabledChains )];
+            chainCellTableIndex = new short[grid.cellsInRow][grid.cellsInRow][2][Math.min( initialTabledChains , maxTabledChains )];
             chainTableIndices = new short[grid.cellsInRow];
                 
-            if( explain && reportChains ){
-                chainRoute = new short[maxChains][maxChainLength];
-                isLinkAscending = new boolean[maxChains][maxChainLength];
+            if( explain ){
+                chainRoute = new short[chainCapacity][maxChainLength];
+                isLinkAscending = new boolean[chainCapacity][maxChainLength];
 /*                
                 chainNComponents = new byte[maxChains];
                 chainComponents = new short[maxChains][maxChainLength];                    
 */
             }
         }
-        if( useNishio ){
+        if( useNishio && resize ){
             mask = new Nishio[grid.cellsInRow][grid.cellsInRow];
         }
         if( useAdjacentSectorPermutation ){
             reportPerms = true ;
-            sectorPerms = new byte[grid.cellsInRow][maxSectorPerms][grid.cellsInRow];
+        }
+        if( useAdjacentSectorPermutation && ( resize || limitsChanged ) ){
+            sectorPerms = new byte[grid.cellsInRow][Math.min( initialSectorPerms , maxSectorPerms )][grid.cellsInRow];
             nSectorPerms = new int[grid.cellsInRow];
             sectorOffsetCount = new int[2][grid.cellsInRow][grid.cellsInRow];
         }
@@ -306,6 +511,208 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         adjacentSectorPermutationCalls = adjacentSectorPermutationEliminations = 0 ;
         nGuesses = 0 ;
         nEliminated = 0 ;
+        capacityExhausted = 0 ;
+        ruleTimeouts = 0 ;
+        limitsChanged = false ;
+        if( resize ){
+            resetRuleSchedule();
+        }
+    }
+
+    /**
+     * Applies the given elimination rule, provided it is in use and hasn't
+     * been skipped by the adaptive scheduler. In adaptive mode, the time
+     * spent by the rule and the eliminations it makes are recorded. When
+     * a time limit applies, the rule runs to a deadline.
+     * @return whether the rule has made progress
+     */
+
+    boolean applyRule( int rule , StringBuilder sb ){
+        if( ! adaptiveScheduling && ruleTimeLimit == 0 && ! hasDeadline ){
+            return invokeRule( rule , sb );
+        } else if( ! isRuleInUse( rule ) || adaptiveScheduling && isRuleSkipped[rule] && ++ ruleConsultations[rule] % ruleRetrialPeriod != 0 ){
+            return false ;
+        }
+        final int eliminations = ruleEliminationCount( rule );
+        final long startTime = System.nanoTime();
+        if( hasDeadline && startTime - deadline >= 0 ){
+            return false ;
+        }
+        // The rule's deadline is the earlier of its own and that of the solve.
+        isRuleTimed = ruleTimeLimit > 0 || hasDeadline ;
+        isRuleTimedOut = false ;
+        if( ruleTimeLimit > 0 && !( hasDeadline && deadline - startTime < ruleTimeLimit ) ){
+            ruleDeadline = startTime + ruleTimeLimit ;
+        } else {
+            ruleDeadline = deadline ;
+        }
+        final boolean progress = invokeRule( rule , sb );
+        isRuleTimed = false ;
+        if( isRuleTimedOut ){
+            ++ ruleTimeouts ;
+        }
+        if( adaptiveScheduling ){
+            ruleNanos[rule] += System.nanoTime() - startTime ;
+            ruleEliminations[rule] += ruleEliminationCount( rule ) - eliminations ;
+            ++ ruleCalls[rule];
+        }
+        return progress ;
+    }
+
+    /**
+     * Determines whether the current rule has run past its deadline, in
+     * which case it should abandon its search.
+     */
+
+    boolean isTimeUp(){
+        if( isRuleTimedOut ){
+            return true ;
+        } else if( ! isRuleTimed || System.nanoTime() - ruleDeadline < 0 ){
+            return false ;
+        }
+        return ( isRuleTimedOut = true );
+    }
+
+    /**
+     * Invokes the given elimination rule if it is in use.
+     */
+
+    boolean invokeRule( int rule , StringBuilder sb ){
+        switch( rule ){
+            case RULE_LOCKED_SECTOR_CANDIDATES:
+                return useLockedSectorCandidates && lockedSectorCandidates( sb );
+            case RULE_DISJOINT_SUBSETS:
+                return useDisjointSubsets && disjointSubsets( sb );
+            case RULE_TWO_SECTOR_DISJOINT_SUBSETS:
+                return useTwoSectorDisjointSubsets && twoSectorDisjointSubsets( sb );
+            case RULE_SINGLE_VALUED_CHAINS:
+                return useSingleValuedChains && singleValuedChains( sb );
+            case RULE_MANY_VALUED_CHAINS:
+                return useManyValuedChains && manyValuedChains( sb );
+            case RULE_NISHIO:
+                return useNishio && nishio( sb );
+            case RULE_ADJACENT_SECTOR_PERMUTATION:
+                return useAdjacentSectorPermutation && adjacentSectorPermutation( sb );
+            default:
+                return false ;
+        }
+    }
+
+    /**
+     * Determines whether the given elimination rule is in use.
+     */
+
+    boolean isRuleInUse( int rule ){
+        switch( rule ){
+            case RULE_LOCKED_SECTOR_CANDIDATES:
+                return useLockedSectorCandidates ;
+            case RULE_DISJOINT_SUBSETS:
+                return useDisjointSubsets ;
+            case RULE_TWO_SECTOR_DISJOINT_SUBSETS:
+                return useTwoSectorDisjointSubsets ;
+            case RULE_SINGLE_VALUED_CHAINS:
+                return useSingleValuedChains ;
+            case RULE_MANY_VALUED_CHAINS:
+                return useManyValuedChains ;
+            case RULE_NISHIO:
+                return useNishio ;
+            case RULE_ADJACENT_SECTOR_PERMUTATION:
+                return useAdjacentSectorPermutation ;
+            default:
+                return false ;
+        }
+    }
+
+    /**
+     * Returns the number of eliminations that have been made by the given
+     * rule since setup(), as recorded by its profile counter.
+     */
+
+    int ruleEliminationCount( int rule ){
+        switch( rule ){
+            case RULE_LOCKED_SECTOR_CANDIDATES:
+                return lockedSectorCandidatesEliminations ;
+            case RULE_DISJOINT_SUBSETS:
+                return disjointSubsetsEliminations ;
+            case RULE_TWO_SECTOR_DISJOINT_SUBSETS:
+                return twoSectorDisjointSubsetsEliminations ;
+            case RULE_SINGLE_VALUED_CHAINS:
+                return singleValuedChainsEliminations ;
+            case RULE_MANY_VALUED_CHAINS:
+                return manyValuedChainsEliminations ;
+            case RULE_NISHIO:
+                return nishioEliminations ;
+            case RULE_ADJACENT_SECTOR_PERMUTATION:
+                return adjacentSectorPermutationEliminations ;
+            default:
+                return 0 ;
+        }
+    }
+
+    /**
+     * Orders the rules for the next search. The rated rules are sorted by
+     * yield into the positions that they occupy in the fixed order, while
+     * the unrated rules keep their places, so that a rule is only moved
+     * once there is evidence for the move.
+     */
+
+    void scheduleRules(){
+        int i , j , nRanked ;
+        double bestYield = 0 ;
+        // Rate the rules.
+        i = 0 ;
+        while( i < nRules ){
+            isRuleRated[i] = ruleCalls[i] >= minRuleTrials ;
+            ruleYield[i] = isRuleRated[i] ? ruleEliminations[i] /( ruleNanos[i] + 1. ) : 0 ;
+            if( ruleYield[i] > bestYield ){
+                bestYield = ruleYield[i];
+            }
+            ++ i ;
+        }
+        // Rank the rated rules, breaking ties in favour of the fixed order.
+        nRanked = 0 ;
+        i = 0 ;
+        while( i < nRules ){
+            if( isRuleRated[i] ){
+                j = nRanked ++ ;
+                while( j > 0 && ruleYield[rankedRules[j-1]] < ruleYield[i] ){
+                    rankedRules[j] = rankedRules[j-1];
+                    -- j ;
+                }
+                rankedRules[j] = i ;
+            }
+            isRuleSkipped[i] = useGuesses && isRuleRated[i] && ruleYield[i] < ruleSkipRatio * bestYield ;
+            ++ i ;
+        }
+        nRanked = 0 ;
+        i = 0 ;
+        while( i < nRules ){
+            ruleOrder[i] = isRuleRated[i] ? rankedRules[nRanked++] : i ;
+            ++ i ;
+        }
+    }
+
+    /**
+     * Describes the current rule order, with the measured yield of each
+     * rated rule in eliminations per millisecond.
+     */
+
+    public String ruleSchedule(){
+        StringBuilder sb = new StringBuilder();
+        int i = 0 ;
+        while( i < nRules ){
+            if( i > 0 ){
+                sb.append(", ");
+            }
+            sb.append( ruleNames[ruleOrder[i]] );
+            if( isRuleRated[ruleOrder[i]] ){
+                sb.append(" (");
+                sb.append( new DecimalFormat("#0.000").format( 1e6 * ruleYield[ruleOrder[i]] ) );
+                sb.append( isRuleSkipped[ruleOrder[i]] ? "/ms, skipped)" : "/ms)" );
+            }
+            ++ i ;
+        }
+        return sb.toString();
     }
     
 	/**
@@ -320,90 +727,38 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         
         StringBuilder sb = explain ? new StringBuilder() : null ;
 
-        try {
-            singleCandidature();
-        } catch ( Exception e ){
-            score = 0 ;
-            return ( nCandidates = 0 );            
-        }
+        int nextRule ;
+        
+        badGridState = false ;
         
         // When no indisputable candidate exists, employ the various
         // rules in order to try to eliminate candidates.
         // The code is only executed for Least Candidates Hybrid II. 
-        if( score > 1 ){
+        if( ! singleCandidature() ){
             nEliminated = 0 ;
-            try {
-               while( true ){
-                    if( useLockedSectorCandidates && lockedSectorCandidates( sb ) ){
-                        if( explain && nEliminated > 0 ){
-                            appendEliminations( sb );
-                        }
-                        if( singleCandidature() ){
-                            break ;
-                        }
-                        continue ;
-                    }
-                    if( useDisjointSubsets && disjointSubsets( sb ) ){
-                        if( explain && nEliminated > 0 ){
-                            appendEliminations( sb );
-                        }
-                        if( singleCandidature() ){
-                            break ;
-                        }
-                        continue ;
-                    }
-                    if( useTwoSectorDisjointSubsets && twoSectorDisjointSubsets( sb ) ){
-                        if( explain && nEliminated > 0 ){
-                            appendEliminations( sb );
-                        }
-                        if( singleCandidature() ){
-                            break ;
-                        }
-                        continue ;
-                    }
-                    if( useSingleValuedChains && singleValuedChains( sb ) ){
-                        if( explain && nEliminated > 0 ){
-                            appendEliminations( sb );
-                        }
-                        if( singleCandidature() ){
-                            break ;
-                        }
-                        continue ;
-                    }
-                   if( useManyValuedChains && manyValuedChains( sb ) ){
-                       if( explain && nEliminated > 0 ){
-                           appendEliminations( sb );
-                       }
-                       if( singleCandidature() ){
-                           break ;
-                       }
-                       continue ;
-                   }
-                   if( useNishio && nishio( sb ) ){
-                       if( explain && nEliminated > 0 ){
-                           appendEliminations( sb );
-                       }
-                       if( singleCandidature() ){
-                           break ;
-                       }
-                       continue ;
-                   }
-                   if( useAdjacentSectorPermutation && adjacentSectorPermutation( sb ) ){
-                       if( explain && nEliminated > 0 ){
-                           appendEliminations( sb );
-                       }
-                       if( singleCandidature() ){
-                           break ;
-                       }
-                       continue ;
-                   }
-                   break ;
+            if( adaptiveScheduling ){
+                scheduleRules();
+            }
+            while( true ){
+                nextRule = 0 ;
+                while( nextRule < nRules && ! applyRule( ruleOrder[nextRule] , sb ) ){
+                    ++ nextRule ;
+                }
+                if( nextRule == nRules ){
+                    break ;
+                }
+                if( explain && nEliminated > 0 ){
+                    appendEliminations( sb );
+                }
+                if( singleCandidature() ){
+                    break ;
                 }
-            } catch ( Exception e ) {
-                score = 0 ;
-                return ( nCandidates = 0 );
             }
         }
+        if( badGridState ){
+            score = 0 ;
+            return ( nCandidates = 0 );
+        }
         if( score > 1 ){
             if( useGuesses ){
                 ++ nGuesses ;
@@ -489,7 +844,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         CellState cellState = (CellState) lcc.state ; 
         int i = 0 , nEliminated = 0 ;
         while( i < grid.cellsInRow ){
-            if( i != v && ! cellState.eliminated[x][y][i] ){
+            if( i != v && ! cellState.isEliminated( x , y , i ) ){
                 eliminateMove( x , y , i );
                 ++ nEliminated ;
             }
@@ -532,14 +887,14 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         
     /**
      * Determines which underlying strategy to prefer.  
-     * @return whether an undisputed candidate has been found
-     * @throws Exception bad grid state
+     * @return whether an undisputed candidate has been found or the grid is in a bad state
      */
     
-    boolean singleCandidature() throws Exception {
+    boolean singleCandidature() {
         ++ singleCandidatureCalls ;
-        if( lcc.findCandidates() == 0 || lcc.getScore() > 1 && lcn.findCandidates() == 0 ){
-            throw new Exception("Bad grid state");
+        if( badGridState || lcc.findCandidates() == 0 || lcc.getScore() > 1 && lcn.findCandidates() == 0 ){
+            badGridState = true ;
+            return true ;
         }
         if( lcc.getScore() == 1 || lcc.getScore() < lcn.getScore() ){
             better = lcc ;
@@ -554,11 +909,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
      * row, column or box will fit into some subset of the available cells,
      * in which case eliminations will be possible. 
      * @param sb explanation
-     * @return whether eliminations have been performed
-     * @throws Exception the grid is in a bad state
+     * @return whether eliminations have been performed or the grid is in a bad state
      */
     
-    boolean disjointSubsets( StringBuilder sb ) throws Exception {
+    boolean disjointSubsets( StringBuilder sb ) {
         ++ disjointSubsetsCalls ;
         final CellState cellState = (CellState) lcc.state ;
         boolean anyMoveEliminated = false ;
@@ -582,7 +936,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                     j = 0 ;
                     eliminate:
                     while( j < grid.cellsInRow ){
-                        if( cellState.eliminated[x[i]][y[i]][j] ){
+                        if( cellState.isEliminated( x[i] , y[i] , j ) ){
                             ++ j ;
                             continue ;
                         }                                    
@@ -628,12 +982,15 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 }
                 ++ linkedValues[0];
             }
+            if( badGridState ){
+                return true ;
+            }
             ++ s ;
         }
         return false ;
     }
   
-    boolean twoSectorDisjointSubsets( StringBuilder sb ) throws Exception {
+    boolean twoSectorDisjointSubsets( StringBuilder sb ) {
         final CellState cellState = (CellState) lcc.state ;
         int b , r , c , v , br , bc , rStart , rEnd , cStart , cEnd ;
         int nCells , nValues , nIntersectionCells , nSet1Cells , nSet1Values , nSet2Cells , nSet2Values ;
@@ -656,10 +1013,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 }
                 c = cStart ;
                 while( c < cEnd ){
-                    if( cellState.nEliminated[r][c] < grid.cellsInRow - 1 ){
+                    if( cellState.countEliminated( r , c ) < grid.cellsInRow - 1 ){
                         v = 0 ;
                         while( v < grid.cellsInRow ){
-                            if( ! isValueUsed[v] && ! cellState.eliminated[r][c][v] ){
+                            if( ! isValueUsed[v] && ! cellState.isEliminated( r , c , v ) ){
                                 isValueUsed[v] = true ;
                                 ++ nValues ;
                             }
@@ -681,10 +1038,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 nSet1Cells = nSet1Values = 0 ;
                 c = 0 ;
                 while(  c < grid.cellsInRow && nCells < nValues ){
-                    if( ( c < cStart || c > cEnd ) && cellState.nEliminated[r][c] < grid.cellsInRow - 1 ){
+                    if( ( c < cStart || c > cEnd ) && cellState.countEliminated( r , c ) < grid.cellsInRow - 1 ){
                         v = 0 ;
                         while( v < grid.cellsInRow ){
-                            if( ! cellState.eliminated[r][c][v] && ! isValueUsed[v] ){
+                            if( ! cellState.isEliminated( r , c , v ) && ! isValueUsed[v] ){
                                 break ;
                             }
                             ++ v ;
@@ -697,7 +1054,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                             ++ nSet1Cells ;
                             v = 0 ;
                             while( v < grid.cellsInRow ){
-                                if( ! cellState.eliminated[r][c][v] && ! isValueInSet1[v] ){
+                                if( ! cellState.isEliminated( r , c , v ) && ! isValueInSet1[v] ){
                                     isValueInSet1[v] = true ;
                                     ++ nSet1Values ;
                                 }
@@ -717,10 +1074,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                     }
                     bc = cStart ;
                     while( bc < cEnd && nCells < nValues ){
-                        if( cellState.nEliminated[br][bc] < grid.cellsInRow - 1 ){
+                        if( cellState.countEliminated( br , bc ) < grid.cellsInRow - 1 ){
                             v = 0 ;
                             while( v < grid.cellsInRow ){
-                                if( ! cellState.eliminated[br][bc][v] && ( ! isValueUsed[v] || isValueInSet1[v] ) ){
+                                if( ! cellState.isEliminated( br , bc , v ) && ( ! isValueUsed[v] || isValueInSet1[v] ) ){
                                     break ;
                                 }
                                 ++ v ;
@@ -732,7 +1089,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                                 ++ nSet2Cells ;
                                 v = 0 ;
                                 while( v < grid.cellsInRow ){
-                                    if( ! cellState.eliminated[br][bc][v] && ! isValueInSet2[v] ){
+                                    if( ! cellState.isEliminated( br , bc , v ) && ! isValueInSet2[v] ){
                                         isValueInSet2[v] = true ;
                                         ++ nSet2Values ;
                                     }
@@ -778,10 +1135,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 }
                 r = rStart ;
                 while( r < rEnd ){
-                    if( cellState.nEliminated[r][c] < grid.cellsInRow - 1 ){
+                    if( cellState.countEliminated( r , c ) < grid.cellsInRow - 1 ){
                         v = 0 ;
                         while( v < grid.cellsInRow ){
-                            if( ! isValueUsed[v] && ! cellState.eliminated[r][c][v] ){
+                            if( ! isValueUsed[v] && ! cellState.isEliminated( r , c , v ) ){
                                 isValueUsed[v] = true ;
                                 ++ nValues ;
                             }
@@ -803,10 +1160,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 nSet1Cells = nSet1Values = 0 ;
                 r = 0 ;
                 while(  r < grid.cellsInRow && nCells < nValues ){
-                    if( ( r < rStart || r > rEnd ) && cellState.nEliminated[r][c] < grid.cellsInRow - 1 ){
+                    if( ( r < rStart || r > rEnd ) && cellState.countEliminated( r , c ) < grid.cellsInRow - 1 ){
                         v = 0 ;
                         while( v < grid.cellsInRow ){
-                            if( ! cellState.eliminated[r][c][v] && ! isValueUsed[v] ){
+                            if( ! cellState.isEliminated( r , c , v ) && ! isValueUsed[v] ){
                                 break ;
                             }
                             ++ v ;
@@ -819,7 +1176,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                             ++ nSet1Cells ;
                             v = 0 ;
                             while( v < grid.cellsInRow ){
-                                if( ! cellState.eliminated[r][c][v] && ! isValueInSet1[v] ){
+                                if( ! cellState.isEliminated( r , c , v ) && ! isValueInSet1[v] ){
                                     isValueInSet1[v] = true ;
                                     ++ nSet1Values ;
                                 }
@@ -839,10 +1196,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                             ++ bc ;
                             continue ;
                         }
-                        if( cellState.nEliminated[br][bc] < grid.cellsInRow - 1 ){
+                        if( cellState.countEliminated( br , bc ) < grid.cellsInRow - 1 ){
                             v = 0 ;
                             while( v < grid.cellsInRow ){
-                                if( ! cellState.eliminated[br][bc][v] && ( ! isValueUsed[v] || isValueInSet1[v] ) ){
+                                if( ! cellState.isEliminated( br , bc , v ) && ( ! isValueUsed[v] || isValueInSet1[v] ) ){
                                     break ;
                                 }
                                 ++ v ;
@@ -854,7 +1211,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                                 ++ nSet2Cells ;
                                 v = 0 ;
                                 while( v < grid.cellsInRow ){
-                                    if( ! cellState.eliminated[br][bc][v] && ! isValueInSet2[v] ){
+                                    if( ! cellState.isEliminated( br , bc , v ) && ! isValueInSet2[v] ){
                                         isValueInSet2[v] = true ;
                                         ++ nSet2Values ;
                                     }
@@ -899,9 +1256,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
      * otherwise grid.cellsInRow is returned. The number of cells occupied by
      * the value set is allowed to exceed the size of the value set by at most
      * offset. The arrays linkedValues and linkedCells are populated. 
+     * The flag badGridState is set if the values can't all be placed.
      */
 
-    boolean findDisjointSubsets( int s , int offset ) throws Exception {
+    boolean findDisjointSubsets( int s , int offset ) {
         NumberState numberState = (NumberState) lcn.state ;
         int i , j , nUnfilled , nUnconsideredValues ;
         // Calculate the number of unfilled cells in the sector.
@@ -937,7 +1295,8 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         while( true ){
             // Check the union size.
             if( linkedCellsSize < linkedValuesSize ){
-                throw new Exception("Bad grid state");
+                badGridState = true ;
+                return false ;
             } else if( linkedCellsSize < linkedValuesSize + offset && linkedCellsSize > 1 && linkedCellsSize < nUnfilled ) {
                 // Legal but not as requested.
                 return false ;
@@ -1008,7 +1367,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         return false ;
     }
 
-    boolean findDisjointSubsets( int s ) throws Exception {
+    boolean findDisjointSubsets( int s ) {
         return findDisjointSubsets( s , 0 );
     }
     
@@ -1033,7 +1392,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 r = offset ;
                 c = s - grid.cellsInRow ;
             }
-            if( cellState.nEliminated[r][c] == grid.cellsInRow - 1 ){
+            if( cellState.countEliminated( r , c ) == grid.cellsInRow - 1 ){
                 ++ offset ;
                 continue ;
             }
@@ -1047,7 +1406,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             }
             i = 0 ;
             while( i < grid.cellsInRow ){
-                if( ! cellState.eliminated[r][c][i] && isValueUsed[i] && ! isValueInSet2[i] ){
+                if( ! cellState.isEliminated( r , c , i ) && isValueUsed[i] && ! isValueInSet2[i] ){
                     anyMoveEliminated = true ;
                     eliminateMove( r , c , i );
                     ++ twoSectorDisjointSubsetsEliminations ;
@@ -1118,7 +1477,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             c = cStart ;
             scanColumn:
             while( c < cEnd ){
-                if( cellState.nEliminated[r][c] == grid.cellsInRow - 1 ){
+                if( cellState.countEliminated( r , c ) == grid.cellsInRow - 1 ){
                     ++ c ;
                     continue ;
                 }
@@ -1132,7 +1491,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 }
                 i = 0 ;
                 while( i < grid.cellsInRow ){
-                    if( ! cellState.eliminated[r][c][i] && isValueUsed[i] && ! isValueInSet1[i] ){
+                    if( ! cellState.isEliminated( r , c , i ) && isValueUsed[i] && ! isValueInSet1[i] ){
                         anyMoveEliminated = true ;
                         eliminateMove( r , c , i );
                         ++ twoSectorDisjointSubsetsEliminations ;
@@ -1292,10 +1651,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
      * a single sector, in which case eliminations might be possible.
      * @param sb explanation
      * @return whether eliminations have been performed
-     * @throws Exception the grid is in a bad state
+     * @return whether eliminations have been performed or the grid is in a bad state
      */
     
-    boolean lockedSectorCandidates( StringBuilder sb ) throws Exception {
+    boolean lockedSectorCandidates( StringBuilder sb ) {
         ++ lockedSectorCandidatesCalls ;
         CellState cellState = (CellState) lcc.state ;
         NumberState numberState = (NumberState) lcn.state ; 
@@ -1306,7 +1665,8 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             s = 0 ;
             while( s < 2 * grid.cellsInRow ){
                 if( numberState.nEliminated[value][s] == grid.cellsInRow ){
-                    throw new Exception("Bad grid state");
+                    badGridState = true ;
+                    return true ;
                 } else if( numberState.nEliminated[value][s] == grid.cellsInRow - 1 ){
                     ++ s ;
                     continue ;
@@ -1351,7 +1711,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                                 ++ y0 ;
                                 continue ;
                             }
-                            if( ! cellState.eliminated[x0][y0][value] ){
+                            if( ! cellState.isEliminated( x0 , y0 , value ) ){
                                 eliminateMove( x0 , y0 , value );
                                 anyMoveEliminated = true ;
                                 ++ lockedSectorCandidatesEliminations ;
@@ -1377,7 +1737,8 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             }
             while( s < 3 * grid.cellsInRow ){
                 if( numberState.nEliminated[value][s] == grid.cellsInRow ){
-                    throw new Exception("Bad grid state");
+                    badGridState = true ;
+                    return true ;
                 } else if( numberState.nEliminated[value][s] == grid.cellsInRow - 1 ){
                     ++ s ;
                     continue ;
@@ -1432,7 +1793,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                             ++ j ;
                             continue ;
                         }
-                        if( ! cellState.eliminated[x0][y0][value] ){
+                        if( ! cellState.isEliminated( x0 , y0 , value ) ){
                             eliminateMove( x0 , y0 , value );
                             anyMoveEliminated = true ;
                             ++ lockedSectorCandidatesEliminations ;
@@ -1463,15 +1824,15 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         return false ;
     }
     
-    boolean singleValuedChains( StringBuilder sb ) throws Exception {
+    boolean singleValuedChains( StringBuilder sb ) {
         boolean anyMoveEliminated = false ;
         int v ;
         ++ singleValuedChainsCalls ;
         v = 0 ;
-        while( ! anyMoveEliminated && v < grid.cellsInRow ){
+        while( ! anyMoveEliminated && v < grid.cellsInRow && ! isTimeUp() ){
             chainsEliminations = 0 ;
             // Use STRONG and WEAK links - nothing else.
-            nChains = 0 ;
+            resetChainTables( false );
             addUnitChains( null , v , true , false , false , false );
             anyMoveEliminated = addLongChains( sb , true , false );
             singleValuedChainsEliminations += chainsEliminations ; 
@@ -1480,14 +1841,14 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         return anyMoveEliminated ;
     }
     
-    boolean manyValuedChains( StringBuilder sb ) throws Exception {
+    boolean manyValuedChains( StringBuilder sb ) {
         int v ;
         ++ manyValuedChainsCalls ;
         chainsEliminations = 0 ;
         // Just STRONG links.
         resetChainTables( false );
         v = 0 ;
-        while( v < grid.cellsInRow ){
+        while( v < grid.cellsInRow && ! isTimeUp() ){
             addUnitChains( null , v , false , false , false , false );
             ++ v ;   
         }
@@ -1498,7 +1859,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         // STRONG and WEAK links.
         resetChainTables( false );
         v = 0 ;
-        while( v < grid.cellsInRow ){
+        while( v < grid.cellsInRow && ! isTimeUp() ){
             addUnitChains( null , v , true , false , false , false );
             ++ v ;   
         }
@@ -1509,7 +1870,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         // STRONG and WEAK links with Tables.
         resetChainTables( true );
         v = 0 ;
-        while( v < grid.cellsInRow ){
+        while( v < grid.cellsInRow && ! isTimeUp() ){
             addUnitChains( null , v , true , false , false , true );
             ++ v ;   
         }
@@ -1520,7 +1881,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         // STRONG, WEAK and EXTENDED links with Tables.
         resetChainTables( true );
         v = 0 ;
-        while( v < grid.cellsInRow ){
+        while( v < grid.cellsInRow && ! isTimeUp() ){
             addUnitChains( null , v , true , true , false , true );
             ++ v ;   
         }
@@ -1535,6 +1896,11 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     void resetChainTables( boolean useTable ){
         int i , s ;
         nChains = 0 ;
+        // Only the buckets that were used need to be cleared.
+        while( nHashedChains > 0 ){
+            -- nHashedChains ;
+            chainHashHead[chainHash( chainR0[nHashedChains] , chainC0[nHashedChains] , chainV0[nHashedChains] , chainR1[nHashedChains] , chainC1[nHashedChains] , chainV1[nHashedChains] )] = -1 ;
+        }
         if( useTable ){
             s = 0 ;
             while( s < 3 * grid.cellsInRow ){
@@ -1568,9 +1934,12 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         int i ,  s , t0 , t1 , x0 , x1 , y0 , y1 , b , b0 , b1 , r ,c , nCandidates ;
         int firstRegularLink , lastRegularLink , otherEnd0True , otherEnd1True , r0 , c0 , r1 , c1 ;
         boolean extended , extendedLinkStillSought ;
+        if( ! ensureChainCapacity() ){
+            return false ;
+        }
         firstRegularLink = nChains ;
         s = 0 ;
-        while( s < 3 * grid.cellsInRow && nChains < maxChains ){
+        while( s < 3 * grid.cellsInRow && nChains < maxChains && ! isTimeUp() ){
             extendedLinkStillSought = extendedLinks ;
             if( numberState.nEliminated[v][s] == grid.cellsInRow - 1 ){
                 ++ s ;
@@ -1647,8 +2016,8 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                         isLinkAscending[nChains][0] = true ;
 //                        chainNComponents[nChains] = 0 ;
                     }
-                    if( ++ nChains == maxChains ){
-                        System.err.println("Chain Builder is full with " + maxChains + " elements");
+                    ++ nChains ;
+                    if( ! ensureChainCapacity() ){
                         return false ;
                     }
                     ++ t1 ;
@@ -1739,8 +2108,8 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                                 }
         */                        
                             }
-                            if( ++ nChains > maxChains ){
-                                System.err.println("Chain Builder is full with " + maxChains + " elements");
+                            ++ nChains ;
+                            if( ! ensureChainCapacity() ){
                                 return false ;
                             }
                             extendedLinkStillSought = false ;
@@ -1758,10 +2127,13 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             while( x0 < grid.cellsInRow ){
                 y0 = 0 ;
                 while( y0 < grid.cellsInRow ){
-                    if( cellState.eliminated[x0][y0][v] || cellState.nEliminated[x0][y0] == grid.cellsInRow - 1 ){
+                    if( cellState.isEliminated( x0 , y0 , v ) || cellState.countEliminated( x0 , y0 ) == grid.cellsInRow - 1 ){
                         ++ y0 ;
                         continue ;
                     }
+                    if( isTimeUp() ){
+                        return false ;
+                    }
                     // Reduce the system.
                     nishioInitiate( v );
                     if( ! nishioReduce( x0 , y0 ) ){
@@ -1787,9 +2159,9 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                                 continue ;
                             }
                             otherEnd0True = otherEnd1True = DONT_KNOW ;
-                            if( mask[x1][y1] == Nishio.DEFINITE && cellState.nEliminated[x1][y1] < grid.cellsInRow - 1 ){
+                            if( mask[x1][y1] == Nishio.DEFINITE && cellState.countEliminated( x1 , y1 ) < grid.cellsInRow - 1 ){
                                 otherEnd0True = TRUE ;
-                            } else if( mask[x1][y1] == Nishio.NULL && ! cellState.eliminated[x1][y1][v] ){
+                            } else if( mask[x1][y1] == Nishio.NULL && ! cellState.isEliminated( x1 , y1 , v ) ){
                                 otherEnd0True = FALSE ; 
                             } else {
                                 ++ y1 ;
@@ -1849,8 +2221,8 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                                 chainRoute[nChains][0] = nChains ;
                                 isLinkAscending[nChains][0] = true ;
                             }
-                            if( ++ nChains == maxChains ){
-                                System.err.println("Chain Builder is full with " + maxChains + " elements");
+                            ++ nChains ;
+                            if( ! ensureChainCapacity() ){
                                 return false ;
                             }                                                                                                                                                               
                             ++ y1 ;
@@ -1875,9 +2247,9 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             return true ;   
         }
         CellState cellState = (CellState) lcc.state ;
-        return cellState.nEliminated[r][c] == grid.cellsInRow - 2 && 
-             ! cellState.eliminated[r][c][v0] && 
-             ! cellState.eliminated[r][c][v1] ;               
+        return cellState.countEliminated( r , c ) == grid.cellsInRow - 2 && 
+             ! cellState.isEliminated( r , c , v0 ) && 
+             ! cellState.isEliminated( r , c , v1 ) ;               
     }
     
     /**
@@ -1913,9 +2285,9 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     boolean cellLink( int r , int c , int v0 , int v1 ){
         if( v0 != v1 ){
             CellState cellState = (CellState) lcc.state ;
-            return cellState.nEliminated[r][c] < grid.cellsInRow - 2 && 
-                 ! cellState.eliminated[r][c][v0] && 
-                 ! cellState.eliminated[r][c][v1] ;                                           
+            return cellState.countEliminated( r , c ) < grid.cellsInRow - 2 && 
+                 ! cellState.isEliminated( r , c , v0 ) && 
+                 ! cellState.isEliminated( r , c , v1 ) ;                                           
         }
         return false ;
     }
@@ -1970,26 +2342,105 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     }
 
     /**
-     * Constructs weakly-linked strings.
+     * Adds the chains up to (but not including) the given chain to the
+     * index of chains by end cell.
+     */
+
+    void indexChains( int chainsEnd ){
+        int cell0 , cell1 ;
+        while( nIndexedChains < chainsEnd ){
+            cell0 = chainR0[nIndexedChains] * grid.cellsInRow + chainC0[nIndexedChains];
+            cell1 = chainR1[nIndexedChains] * grid.cellsInRow + chainC1[nIndexedChains];
+            indexChain( cell0 );
+            if( cell1 != cell0 ){
+                indexChain( cell1 );
+            }
+            ++ nIndexedChains ;
+        }
+    }
+
+    /**
+     * Adds the next chain to be indexed to the list for the given cell.
+     */
+
+    void indexChain( int cell ){
+        if( nCellChains[cell] == cellChains[cell].length ){
+            short[] chains = new short[2*cellChains[cell].length];
+            System.arraycopy( cellChains[cell] , 0 , chains , 0 , nCellChains[cell] );
+            cellChains[cell] = chains ;
+        }
+        cellChains[cell][nCellChains[cell]++] = (short) nIndexedChains ;
+    }
+
+    /**
+     * Returns the position of the first chain in a list of indexed
+     * chains that isn't less than the given chain.
+     */
+
+    static int findChain( short[] chains , int nChains , int chain ){
+        int lo = 0 , hi = nChains , mid ;
+        while( lo < hi ){
+            mid = ( lo + hi )/ 2 ;
+            if( chains[mid] < chain ){
+                lo = mid + 1 ;
+            } else {
+                hi = mid ;
+            }
+        }
+        return lo ;
+    }
+
+    /**
+     * Constructs weakly-linked strings. Two chains can only be linked when
+     * an end of one lies in the same cell as an end of the other, so each
+     * chain is only tested against the chains listed under its end cells.
+     * The pairs are tested in the same order as they would be by a scan
+     * over all pairs.
      */
     
     boolean addLongChains( StringBuilder sb , boolean useWeakLinks , boolean useTable ){
-        int i , j , type ;
+        int i , j , type , cell0 , cell1 , p0 , p1 , n0 , n1 ;
         short k , chainsBegin , chainsEnd , nChainsStart ;
+        short[] chains0 , chains1 ;
         boolean isLinkStrong ;
         chainsBegin = 0 ;
         chainsEnd   = nChains ;
+        nIndexedChains = 0 ;
+        i = 0 ;
+        while( i < nCellChains.length ){
+            nCellChains[i++] = 0 ;
+        }
         while( chainsBegin < chainsEnd ){
+            indexChains( chainsEnd );
             // Test for linkage to others.            
             i = 0 ;
             while( i < chainsEnd ){
+                if( isTimeUp() ){
+                    return false ;
+                }
                 j = Math.max( i + 1 , chainsBegin );
-                while( j < chainsEnd && nChains < maxChains ){
+                cell0 = chainR0[i] * grid.cellsInRow + chainC0[i];
+                cell1 = chainR1[i] * grid.cellsInRow + chainC1[i];
+                chains0 = cellChains[cell0];
+                n0 = nCellChains[cell0];
+                p0 = findChain( chains0 , n0 , j );
+                chains1 = cellChains[cell1];
+                n1 = cell1 != cell0 ? nCellChains[cell1] : 0 ;
+                p1 = findChain( chains1 , n1 , j );
+                while( ( p0 < n0 || p1 < n1 ) && nChains < maxChains ){
+                    // Take the next chain that shares a cell with chain i.
+                    if( p1 == n1 || p0 < n0 && chains0[p0] <= chains1[p1] ){
+                        j = chains0[p0++];
+                        if( p1 < n1 && chains1[p1] == j ){
+                            ++ p1 ;
+                        }
+                    } else {
+                        j = chains1[p1++];
+                    }
                     nChainsStart = nChains ;
                     type = linkType( i , j , useWeakLinks );
                     if( type / 4 == STRONG || type / 4 == CELL ){
                         if( ! connect( i , j , type ) ){
-                            ++ j ;
                             continue ;
                         }
                     } else if( type / 4 == MATCH && nChains < maxChains - 1 ){
@@ -2017,8 +2468,6 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                         }
                         ++ k ;
                     }
-                    // Next link
-                    ++ j ;
                 }
                 ++ i ;
             }
@@ -2210,7 +2659,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             CellState cellState = (CellState) lcc.state ;
             i = 0 ;
             while( i < grid.cellsInRow ){
-                if( ! cellState.eliminated[r0][c0][i] && i != v0 && i != v1 ){
+                if( ! cellState.isEliminated( r0 , c0 , i ) && i != v0 && i != v1 ){
                     eliminateMove( r0 , c0 , i );
                     ++ chainsEliminations ;
                 }
@@ -2258,7 +2707,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             return false ;
         }
         if( sharedSector >= 0 ){
-            if( ! cellState.eliminated[r0][c0][v1] ){
+            if( ! cellState.isEliminated( r0 , c0 , v1 ) ){
                 if( explain ){
                     if( reportChains ){
                         sb.append("Consider the chain ");
@@ -2281,7 +2730,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 ++ chainsEliminations ;
                 anyMoveEliminated = true ;
             }
-            if( ! cellState.eliminated[r1][c1][v0] ){
+            if( ! cellState.isEliminated( r1 , c1 , v0 ) ){
                 if( explain ){
                     if( reportChains && ! anyMoveEliminated ){
                         sb.append("Consider the chain ");
@@ -2315,7 +2764,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             nValues = 0 ;
             i = 0 ;
             while( i < grid.cellsInRow ){                
-                if( ( isValueUsed[i] = i != v0 && i != v1 && ( ! cellState.eliminated[r0][c0][i] || ! cellState.eliminated[r1][c1][i] ) ) ){
+                if( ( isValueUsed[i] = i != v0 && i != v1 && ( ! cellState.isEliminated( r0 , c0 , i ) || ! cellState.isEliminated( r1 , c1 , i ) ) ) ){
                     ++ nValues ;
                 }
                 isCellUsed[i] = false ;
@@ -2337,9 +2786,9 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                         r = ( sharedSector - 2 * grid.cellsInRow )/ grid.boxesAcross * grid.boxesAcross + i / grid.boxesDown ;
                         c = ( sharedSector - 2 * grid.cellsInRow )% grid.boxesAcross * grid.boxesDown + i % grid.boxesDown ;
                     }
-                    if( cellState.nEliminated[r][c] == grid.cellsInRow - 2 &&
-                        ! cellState.eliminated[r][c][v0] &&
-                        ! cellState.eliminated[r][c][v1] ){
+                    if( cellState.countEliminated( r , c ) == grid.cellsInRow - 2 &&
+                        ! cellState.isEliminated( r , c , v0 ) &&
+                        ! cellState.isEliminated( r , c , v1 ) ){
                         x[0] = r ;
                         y[0] = c ;
                         break ;
@@ -2367,12 +2816,12 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                             ++ j ;
                             continue ;
                         }
-                        if( ! cellState.eliminated[r][c][v0] ){
+                        if( ! cellState.isEliminated( r , c , v0 ) ){
                             eliminateMove( r , c , v0 );
                             ++ chainsEliminations ;
                             anyMoveEliminated |= ( endValuesMatch = true );
                         }
-                        if( ! cellState.eliminated[r][c][v1] ){
+                        if( ! cellState.isEliminated( r , c , v1 ) ){
                             eliminateMove( r , c , v1 );
                             ++ chainsEliminations ;
                             anyMoveEliminated |= ( endValuesMatch = true );
@@ -2419,7 +2868,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 }                
                 j = 0 ;
                 while( j < grid.cellsInRow ){
-                    if( ! isValueUsed[j] && ! cellState.eliminated[r][c][j] ){        
+                    if( ! isValueUsed[j] && ! cellState.isEliminated( r , c , j ) ){        
                         break ;
                     }
                     ++ j ;
@@ -2455,7 +2904,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                     } 
                     j = 0 ;
                     while( j < grid.cellsInRow ){
-                        if( isValueUsed[j] && ! cellState.eliminated[r][c][j] ){
+                        if( isValueUsed[j] && ! cellState.isEliminated( r , c , j ) ){
                             eliminateMove( r , c , j );
                             ++ chainsEliminations ;
                             anyMoveEliminated |= ( otherValuesMatch = true );
@@ -2757,6 +3206,72 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         return true ;
     }
 
+    /**
+     * Ensures that there is room to record a further chain, doubling the
+     * chain arrays if necessary. Returns false, and counts the event, when
+     * the chain limit has been reached.
+     */
+
+    boolean ensureChainCapacity(){
+        if( nChains < chainCapacity && nChains < maxChains ){
+            return true ;
+        } else if( nChains >= maxChains ){
+            ++ capacityExhausted ;
+            return false ;
+        }
+        int i = chainCapacity ;
+        chainCapacity = Math.min( 2 * chainCapacity , maxChains );
+        chainR0 = Arrays.copyOf( chainR0 , chainCapacity );
+        chainC0 = Arrays.copyOf( chainC0 , chainCapacity );
+        chainR1 = Arrays.copyOf( chainR1 , chainCapacity );
+        chainC1 = Arrays.copyOf( chainC1 , chainCapacity );
+        chainV0 = Arrays.copyOf( chainV0 , chainCapacity );
+        chainV1 = Arrays.copyOf( chainV1 , chainCapacity );
+        chainLength = Arrays.copyOf( chainLength , chainCapacity );
+        chainOtherEnd0 = Arrays.copyOf( chainOtherEnd0 , chainCapacity );
+        chainOtherEnd1 = Arrays.copyOf( chainOtherEnd1 , chainCapacity );
+        linkCategory = Arrays.copyOf( linkCategory , chainCapacity );
+        chainHashNext = Arrays.copyOf( chainHashNext , chainCapacity );
+        if( chainRoute instanceof short[][] ){
+            chainRoute = Arrays.copyOf( chainRoute , chainCapacity );
+            isLinkAscending = Arrays.copyOf( isLinkAscending , chainCapacity );
+        }
+        while( i < chainCapacity ){
+            chainOtherEnd0[i] = new byte[2];
+            chainOtherEnd1[i] = new byte[2];
+            if( chainRoute instanceof short[][] ){
+                chainRoute[i] = new short[maxChainLength];
+                isLinkAscending[i] = new boolean[maxChainLength];
+            }
+            ++ i ;
+        }
+        return true ;
+    }
+
+    /**
+     * Returns the hash bucket for a chain with the given ends.
+     */
+
+    int chainHash( int r0 , int c0 , int v0 , int r1 , int c1 , int v1 ){
+        int h = ( ( ( ( r0 * 31 + c0 )* 31 + v0 )* 31 + r1 )* 31 + c1 )* 31 + v1 ;
+        h ^= h >>> 16 ;
+        return h & ( chainHashHead.length - 1 );
+    }
+
+    /**
+     * Adds any chains that have been created since the last call to the hash table.
+     */
+
+    void hashChains(){
+        int h ;
+        while( nHashedChains < nChains ){
+            h = chainHash( chainR0[nHashedChains] , chainC0[nHashedChains] , chainV0[nHashedChains] , chainR1[nHashedChains] , chainC1[nHashedChains] , chainV1[nHashedChains] );
+            chainHashNext[nHashedChains] = chainHashHead[h];
+            chainHashHead[h] = (short) nHashedChains ;
+            ++ nHashedChains ;
+        }
+    }
+
     boolean recordChain( int r0 ,
                          int c0 ,
                          int v0 ,
@@ -2773,20 +3288,21 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         // The chain should have been inverted if necessary prior to this call.
         assert r0 < r1 || r0 == r1 && c0 <= c1 ;
         // Check whether the chain, or a stronger form of it, has already been recorded.
-        k = 0 ;
-        while( k < nChains ){
+        hashChains();
+        k = chainHashHead[chainHash( r0 , c0 , v0 , r1 , c1 , v1 )];
+        while( k >= 0 ){
             if( r0 == chainR0[k] && c0 == chainC0[k] && v0 == chainV0[k] && 
                 r1 == chainR1[k] && c1 == chainC1[k] && v1 == chainV1[k] ){
                 // Check whether the new chain has any new info not in the old.
                 hasNewInfo = false ;
-                twoCandidates = cellState.nEliminated[r0][c0] < grid.cellsInRow - 2 ;
+                twoCandidates = cellState.countEliminated( r0 , c0 ) < grid.cellsInRow - 2 ;
                 if( otherEnd0True != DONT_KNOW ){
                     hasNewInfo = chainOtherEnd0[k][TRUE] == DONT_KNOW || isAssertionConfirmed( chainV0[k] , chainOtherEnd0[k][TRUE] , v0 , otherEnd0True , twoCandidates ) == 2 ;
                 }
                 if( ! hasNewInfo && otherEnd0False != DONT_KNOW ){
                     hasNewInfo = chainOtherEnd0[k][FALSE] == DONT_KNOW || isAssertionConfirmed( chainV0[k] , chainOtherEnd0[k][FALSE] , v0 , otherEnd0False , twoCandidates ) == 2 ;
                 }
-                twoCandidates = cellState.nEliminated[r1][c1] < grid.cellsInRow - 2 ;
+                twoCandidates = cellState.countEliminated( r1 , c1 ) < grid.cellsInRow - 2 ;
                 if( ! hasNewInfo && otherEnd1True != DONT_KNOW ){
                     hasNewInfo = chainOtherEnd1[k][TRUE] == DONT_KNOW || isAssertionConfirmed( chainV1[k] , chainOtherEnd1[k][TRUE] , v1 , otherEnd1True , twoCandidates ) == 2 ;
                 }
@@ -2797,11 +3313,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                     return false ;
                 }
             }
-            ++ k ;
+            k = chainHashNext[k];
         }
         // Write to the list.
-        if( nChains == maxChains ){
-            System.err.println("Chain Builder is full with " + maxChains + " elements");
+        if( ! ensureChainCapacity() ){
             return false ;
         }
         chainR0[nChains] = (byte) r0 ;
@@ -2888,23 +3403,31 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     }
     
     void addChainToSectorTable( short nChain , int sector , int offset , int bool , boolean end0 ){
-        if( chainSectorTableSize[sector][offset][bool] < maxTabledChains ){
-            chainSectorTableIndex[sector][offset][bool][chainSectorTableSize[sector][offset][bool]] = nChain ;
-            chainSectorTableEnd0[sector][offset][bool][chainSectorTableSize[sector][offset][bool]] = end0 ;
-            ++ chainSectorTableSize[sector][offset][bool];          
-        } else {
-            System.err.println("Tabled chains Builder is full with " + maxTabledChains + " elements");            
+        final int size = chainSectorTableSize[sector][offset][bool];
+        if( size >= maxTabledChains ){
+            ++ capacityExhausted ;
+            return ;
+        } else if( size == chainSectorTableIndex[sector][offset][bool].length ){
+            chainSectorTableIndex[sector][offset][bool] = Arrays.copyOf( chainSectorTableIndex[sector][offset][bool] , Math.min( 2 * size , maxTabledChains ) );
+            chainSectorTableEnd0[sector][offset][bool] = Arrays.copyOf( chainSectorTableEnd0[sector][offset][bool] , Math.min( 2 * size , maxTabledChains ) );
         }
+        chainSectorTableIndex[sector][offset][bool][size] = nChain ;
+        chainSectorTableEnd0[sector][offset][bool][size] = end0 ;
+        ++ chainSectorTableSize[sector][offset][bool];          
     }
     
     void addChainToCellTable( short nChain , int r , int c , int bool , boolean end0 ){
-        if( chainCellTableSize[r][c][bool] < maxTabledChains ){
-            chainCellTableIndex[r][c][bool][chainCellTableSize[r][c][bool]] = nChain ;
-            chainCellTableEnd0[r][c][bool][chainCellTableSize[r][c][bool]] = end0 ;
-            ++ chainCellTableSize[r][c][bool];          
-        } else {
-            System.err.println("Tabled chains Builder is full with " + maxTabledChains + " elements");            
+        final int size = chainCellTableSize[r][c][bool];
+        if( size >= maxTabledChains ){
+            ++ capacityExhausted ;
+            return ;
+        } else if( size == chainCellTableIndex[r][c][bool].length ){
+            chainCellTableIndex[r][c][bool] = Arrays.copyOf( chainCellTableIndex[r][c][bool] , Math.min( 2 * size , maxTabledChains ) );
+            chainCellTableEnd0[r][c][bool] = Arrays.copyOf( chainCellTableEnd0[r][c][bool] , Math.min( 2 * size , maxTabledChains ) );
         }
+        chainCellTableIndex[r][c][bool][size] = nChain ;
+        chainCellTableEnd0[r][c][bool][size] = end0 ;
+        ++ chainCellTableSize[r][c][bool];          
     }
 
     /**
@@ -2975,7 +3498,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 continue ;
             }
             if( rowInfo == otherEndRow && columnInfo == otherEndColumn ){
-                twoCandidates = grid.cellsInRow - cellState.nEliminated[otherEndRow][otherEndColumn] == 2 ; 
+                twoCandidates = grid.cellsInRow - cellState.countEliminated( otherEndRow , otherEndColumn ) == 2 ; 
                 switch( isAssertionConfirmed( bool , otherEndValue , booleanInfo , valueInfo , twoCandidates ) ){
                 case 1 :
                     return i ;
@@ -3030,7 +3553,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 ++ i ;
                 continue ;
             }
-            twoCandidates = grid.cellsInRow - cellState.nEliminated[otherEndRow][otherEndColumn] == 2 ; 
+            twoCandidates = grid.cellsInRow - cellState.countEliminated( otherEndRow , otherEndColumn ) == 2 ; 
             if( rowInfo == otherEndRow && columnInfo == otherEndColumn && 
                 ! isAssertionConsistent( bool , otherEndValue , booleanInfo , valueInfo , twoCandidates ) ){
                 return i ;
@@ -3229,7 +3752,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         size = chainCellTableSize[r][c][notBoolean( bool )];
         t = 0 ;
         while( t < grid.cellsInRow ){
-            if( t == v || cellState.eliminated[r][c][t] ){
+            if( t == v || cellState.isEliminated( r , c , t ) ){
                 ++ t ;
                 continue ;
             }
@@ -3343,7 +3866,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             vOther = end0 ? chainV1[nChain] : chainV0[nChain] ,
             b = end0 ? chainOtherEnd0[nChain][bool] : chainOtherEnd1[nChain][bool];
         final int size = chainCellTableSize[r][c][bool] ,
-                  nCandidates = grid.cellsInRow - cellState.nEliminated[r][c] ;
+                  nCandidates = grid.cellsInRow - cellState.countEliminated( r , c ) ;
         // The chain shouldn't be cyclic.
         assert r != rOther || c != cOther ;
         //
@@ -3356,7 +3879,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             t = 0 ;
             storeInfo:
             while( t < grid.cellsInRow ){
-                if( t == v || cellState.eliminated[r][c][t] ){
+                if( t == v || cellState.isEliminated( r , c , t ) ){
                     ++ t ;
                     continue ;
                 }
@@ -3482,8 +4005,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                     linkCategory[nChains] = INFERRED ;
                     chainLength[nChains] = 1 ;  
                     // Record the route, if necessary
-                    chainRoute[nChains][0] = nChains ;
-                    isLinkAscending[nChains][0] = true ;
+                    if( explain && reportChains && maxChainLength >= 1 ){
+                        chainRoute[nChains][0] = nChains ;
+                        isLinkAscending[nChains][0] = true ;
+                    }
                     ++ nChains ;
                 }                              
             }            
@@ -3688,8 +4213,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                             linkCategory[nChains] = INFERRED ;
                             chainLength[nChains] = 1 ;  
                             // Record the route, if necessary
-                            chainRoute[nChains][0] = nChains ;
-                            isLinkAscending[nChains][0] = true ;
+                            if( explain && reportChains && maxChainLength >= 1 ){
+                                chainRoute[nChains][0] = nChains ;
+                                isLinkAscending[nChains][0] = true ;
+                            }
                                                         
                             ++ nChains ;
                         }                                        
@@ -3744,6 +4271,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     
     void appendComponentChain( StringBuilder sb , int s ){
         if( chainLength[s] > maxChainLength ){
+            ++ capacityExhausted ;
             sb.append("<Chain length exceeds ");
             sb.append( maxChainLength );
             sb.append('>');
@@ -3912,10 +4440,10 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         while( r < grid.cellsInRow ){
             c = 0 ;
             while( c < grid.cellsInRow ){
-                if( cellState.eliminated[r][c][v] ){
+                if( cellState.isEliminated( r , c , v ) ){
                     mask[r][c] = Nishio.NULL ;
                 } else {
-                    if( cellState.nEliminated[r][c] == grid.cellsInRow - 1 ){
+                    if( cellState.countEliminated( r , c ) == grid.cellsInRow - 1 ){
                         mask[r][c] = Nishio.DEFINITE ; 
                     } else {
                         mask[r][c] = Nishio.POSSIBLE ; 
@@ -4108,21 +4636,31 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             s = 0 ;
             while( s < grid.cellsInRow && ! anyMoveEliminated ){
                 // Permutate each row within the block.
-                if( ( nSectorPerms[s] = permutateSector( dim * grid.cellsInRow + s , sectorPerms[s] , maxSectorPerms ) ) == maxSectorPerms ){
+                if( ( nSectorPerms[s] = permutateSector( dim * grid.cellsInRow + s , s ) ) == maxSectorPerms ){
                     // Overflow - move on to the next block.
-                    System.err.println("Permutation buffer is full with " + maxSectorPerms + " elements");
+                    ++ capacityExhausted ;
+                }
+                // The permutations are incomplete if time ran out.
+                if( isTimeUp() ){
+                    return false ;
                 }
                 ++ s ;
             }
             // Pairwise comparison of sectors.
             s1 = 0 ;
             while( s1 < grid.cellsInRow - 1 && ! anyMoveEliminated ){
+                if( isTimeUp() ){
+                    return false ;
+                }
                 if( nSectorPerms[s1] == maxSectorPerms ){
                     ++ s1 ;
                     continue ;
                 }
                 s2 = s1 + 1 ;
                 while( s2 < grid.cellsInRow && ! anyMoveEliminated ){
+                    if( isTimeUp() ){
+                        return false ;
+                    }
                     if( nSectorPerms[s2] == maxSectorPerms ){
                         ++ s2 ;
                         continue ;
@@ -4285,7 +4823,7 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                                                     ++ c ;
                                                     continue ;
                                                 }
-                                                if( ! cellState.eliminated[r][c][v] ){
+                                                if( ! cellState.isEliminated( r , c , v ) ){
                                                     eliminateMove( r , c , v );
                                                     boxElimination = true ;
                                                     ++ adjacentSectorPermutationEliminations ;
@@ -4330,8 +4868,17 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         return anyMoveEliminated ;
     }
     
-    int permutateSector( int s , byte[][] perms , int maxPerms ){
+    /**
+     * Writes the permutations of the values of sector s into the buffer
+     * for position p of the current block, growing the buffer as required.
+     * Returns the number of permutations, which equals maxSectorPerms when
+     * the buffer has overflowed. The list is cut short if the rule runs
+     * out of time, so the caller must check isTimeUp() before using it.
+     */
+
+    int permutateSector( int s , int p ){
         final NumberState numberState = (NumberState) lcn.state ;
+        byte[][] perms = sectorPerms[p];
         int i , j , v , nPerms ;
         nPerms = 0 ;
         perms[nPerms][0] = 0 ;
@@ -4373,8 +4920,20 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
                 }
             }
             if( v == grid.cellsInRow ){
+                // Check the clock every so often.
+                if( ( nPerms & 1023 ) == 1023 && isTimeUp() ){
+                    break ;
+                }
                 // Set up the next permutation.
-                if( ++ nPerms < maxPerms ){
+                if( ++ nPerms == perms.length && nPerms < maxSectorPerms ){
+                    // Double the buffer.
+                    perms = sectorPerms[p] = Arrays.copyOf( perms , Math.min( 2 * nPerms , maxSectorPerms ) );
+                    i = nPerms ;
+                    while( i < perms.length ){
+                        perms[i++] = new byte[grid.cellsInRow];
+                    }
+                }
+                if( nPerms < maxSectorPerms ){
                     i = 0 ;
                     while( i < grid.cellsInRow ){
                         perms[nPerms][i] = perms[nPerms-1][i];
@@ -4495,14 +5054,18 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
     }
     
     /** 
-     * Updates state variables.
-	 * @see com.act365.sudoku.IStrategy#updateState(int,int,int,String,boolean)
+     * Updates state variables without throwing an exception. The move is
+     * applied to every state, so that the underlying strategies stay in
+     * step with this one when the thread is unwound, and the status from
+     * the first state to reject the move is returned.
+	 * @see com.act365.sudoku.IStrategy#tryUpdateState(int,int,int,String,boolean)
 	 */
     
-	@Override public boolean updateState(int x , int y , int value , String reason , boolean writeState ) throws Exception {
+	@Override public int tryUpdateState(int x , int y , int value , String reason , boolean writeState ) {
         if( nMoves == -1 ){
-            return false ;
+            return THREAD_EXHAUSTED ;
         }
+        int status = IState.MOVE_ADDED , innerStatus ;
         // Store current state variables on thread.
         if( writeState && ( updateInvulnerableState || updateLinearSystemState ) ){
             if( updateInvulnerableState ){
@@ -4525,15 +5088,19 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         ++ nMoves ;
         // Update state variables
         if( updateInvulnerableState ){
-            invulnerableState.addMove( x , y , value - 1 );
+            status = invulnerableState.tryAddMove( x , y , value - 1 );
         }
-        if( updateLinearSystemState ){
-            linearSystemState.addMove( x , y , value - 1 );
+        if( updateLinearSystemState && ( innerStatus = linearSystemState.tryAddMove( x , y , value - 1 ) ) != IState.MOVE_ADDED && status == IState.MOVE_ADDED ){
+            status = innerStatus ;
         }        
         // Underlying state variables
-		lcn.updateState( x , y , value , reason , writeState );
-        lcc.updateState( x , y , value , reason , writeState );
-        return true ;
+		if( ( innerStatus = lcn.tryUpdateState( x , y , value , reason , writeState ) ) != IState.MOVE_ADDED && status == IState.MOVE_ADDED ){
+            status = innerStatus ;
+        }
+		if( ( innerStatus = lcc.tryUpdateState( x , y , value , reason , writeState ) ) != IState.MOVE_ADDED && status == IState.MOVE_ADDED ){
+            status = innerStatus ;
+        }
+        return status ;
 	}
 
 	/**
@@ -4552,7 +5119,8 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
             reasons[newNMoves].append(" leads to a contradiction.\n");
             int i = newNMoves + 1 ;
             while( i < nMoves ){
-                reasons[i++] = new StringBuilder();
+                reasons[i].delete( 0 , reasons[i].length() );
+                ++ i ;
             }
         }
         if( updateInvulnerableState ){
@@ -4581,6 +5149,22 @@ public class LeastCandidatesHybrid extends StrategyBase implements IStrategy {
         return true ;
 	}
     
+    /**
+     * Returns the number of bytes that have been allocated in order
+     * to store the threads of all of the state grids.
+     */
+    
+    @Override public long getThreadFootprint(){
+        long footprint = lcn.getThreadFootprint() + lcc.getThreadFootprint();
+        if( updateInvulnerableState ){
+            footprint += invulnerableState.getThreadFootprint();
+        }
+        if( updateLinearSystemState ){
+            footprint += linearSystemState.getThreadFootprint();
+        }
+        return footprint ;
+    }
+    
     /**
      * Determines the last move for which two or more alternatives existed.
      */
@@ -63,6 +63,15 @@ public class LeastCandidatesNumber extends StrategyBase implements IStrategy {
         state = new NumberState();
     }
     
+    /**
+     * Chooses whether the state grid should use an undo log.
+     * @see com.act365.sudoku.StrategyBase#setUndoLog(boolean)
+     */
+    
+    public void setUndoLog( boolean useUndoLog ){
+        ((NumberState) state).setUndoLog( useUndoLog );
+    }
+    
     /**
      * Sets the state variables.
      */
@@ -185,6 +185,16 @@ public class LinearSystemState implements IState {
 	 */
     
 	public void addMove( int x , int y , int v ) throws MoveException {
+        tryAddMove( x , y , v );
+    }
+
+	/** 
+     * Adds the constraint (x,y):=v to the system and reduces. 
+     * The linear system never reports a contradiction.
+	 * @see com.act365.sudoku.IState#tryAddMove(int, int, int)
+	 */
+    
+	public int tryAddMove( int x , int y , int v ) {
         int i , j , k ;
         // Eliminate other candidates for the current row.
         j = 0 ;
@@ -239,6 +249,7 @@ public class LinearSystemState implements IState {
         ++ nRows[v];
         // Reduce the system.
         nRows[v] = reduce( v );
+        return MOVE_ADDED ;
 	}
 
 	/** 
@@ -393,6 +404,30 @@ public class LinearSystemState implements IState {
         return pivotRow ;
     }
 
+    /**
+     * Returns the number of bytes held by the slices on the state stack.
+     * @see com.act365.sudoku.IState#getThreadFootprint()
+     */
+     
+    public long getThreadFootprint(){
+        long footprint = 4L * cellsInRow * cellsInRow * cellsInRow ;
+        byte[][][] aSlice ;
+        int i , v ;
+        i = 0 ;
+        while( i < stack.size() ){
+            if( stack.elementAt( i ) instanceof byte[][][] ){
+                aSlice = (byte[][][]) stack.elementAt( i );
+                v = 0 ;
+                while( v < aSlice.length ){
+                    footprint += aSlice[v].length *( 1 + cellsInRow * cellsInRow );
+                    ++ v ;
+                }
+            }
+            ++ i ;
+        }
+        return footprint ;
+    }
+
     /**
      * String representation
      */
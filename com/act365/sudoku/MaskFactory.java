@@ -25,6 +25,10 @@
 
 package com.act365.sudoku;
 
+import com.act365.sudoku.masks.*;
+
+import java.io.* ;
+import java.math.* ;
 import java.util.* ;
 
 /**
@@ -38,17 +42,15 @@ import java.util.* ;
 @SuppressWarnings("rawtypes")
 public abstract class MaskFactory implements Enumeration {
 
-    int sector ;
-    
     int[] sectorBalls0 ;
     
     protected int[][] g ;
     
     int[][] g0 ;
     
-    boolean[] haveIteratedBalls ;
+    // Whether every mask in the sequence has been generated.
     
-    boolean haveIteratedSectors ;
+    boolean exhausted ;
     
     protected boolean[][] mask ;
     
@@ -63,6 +65,10 @@ public abstract class MaskFactory implements Enumeration {
                     sectorMin ,
                     sectorMax ;
     
+    // The factory returns every nParts-th mask of the sequence.
+
+    int nParts = 1 ;
+    
     static Random random ;
     
     /**
@@ -257,7 +263,6 @@ public abstract class MaskFactory implements Enumeration {
         sectorSlots = new int[nSectors];
         g = new int[nSectors][];
         g0 = new int[nSectors][];       
-        haveIteratedBalls = new boolean[nSectors]; 
     }
     
     /**
@@ -275,88 +280,136 @@ public abstract class MaskFactory implements Enumeration {
     }
     
     // Various private functions to iterate through the set of possible masks.
+    // The sequence steps through the valid allocations of balls to sectors.
+    // For each allocation, the gaps between the balls in the sectors are
+    // stepped like the wheels of an odometer, the last sector fastest, and
+    // each wheel turns through every arrangement of its sector from g0 back
+    // round to g0 before the next wheel moves on.
     
     void resetBalls( int sector ){
+        if( g[sector] == null || g[sector].length != 1 + sectorBalls[sector] ){
+            g[sector] = new int[1+sectorBalls[sector]];
+            g0[sector] = new int[1+sectorBalls[sector]];
+        }
         g0[sector][sectorBalls[sector]] = g[sector][sectorBalls[sector]] = sectorSlots[sector] - sectorBalls[sector] ;
         int i = 0 ;
         while( i < sectorBalls[sector] ){
             g0[sector][i] = g[sector][i] = 0 ;
             ++ i ;
         }
-        haveIteratedBalls[sector] = false ;
     }
     
-    void iterateBalls( int sector ){
+    /**
+     * Moves the gaps of a sector on to their next arrangement and
+     * indicates whether they have wrapped back to their start.
+     */
+    
+    boolean iterateBalls( int sector ){
         iterate( g[sector] , sectorSlots[sector] - sectorBalls[sector] );
-        haveIteratedBalls[sector] = true ;
+        return Arrays.equals( g[sector] , g0[sector] );
     }
-    
-    boolean hasMoreBalls( int sector ){
-        if( ! haveIteratedBalls[sector] ){
-            return true ;
-        }
-        int i = 0 ;
-        while( i < 1 + sectorBalls[sector] ){
-            if( g[sector][i] != g0[sector][i] ){
-                return true ;   
+
+    /**
+     * Indicates whether every sector can hold its balls and the
+     * allocation meets the constraints of the symmetry class.
+     */
+
+    boolean isAllocationValid(){
+        int s = 0 ;
+        while( s < nSectors ){
+            if( sectorBalls[s] < 0 || sectorBalls[s] > sectorSlots[s] ){
+                return false ;
             }
-            ++ i ;
+            ++ s ;
         }
+        return areSectorsValid();
+    }
+
+    /**
+     * Moves the allocation of balls to sectors on to the next valid
+     * allocation, which will be the current allocation when no other is
+     * valid. False is returned when no allocation is valid.
+     */
+
+    boolean iterateSectors(){
+        final int[] start = (int[]) sectorBalls.clone();
+        do {
+            iterate( sectorBalls , sectorMin , sectorMax );
+            if( isAllocationValid() ){
+                return true ;
+            }
+        } while( ! Arrays.equals( sectorBalls , start ) );
         return false ;
     }
 
+    /**
+     * Restarts the sequence at the first valid allocation, with the balls
+     * in each sector at the start of the sector.
+     */
+
     void resetSectors(){
         int i = 0 ;
         while( i < nSectors ){
             sectorBalls[i] = sectorMin[i] ;
             ++ i ;    
         }
-        while( ! areSectorsValid() ){
-            iterate( sectorBalls , sectorMin , sectorMax );
+        exhausted = ! isAllocationValid() && ! iterateSectors();
+        if( exhausted ){
+            return ;
         }
+        System.arraycopy( sectorBalls , 0 , sectorBalls0 , 0 , nSectors );
         i = 0 ;
         while( i < nSectors ){
-            sectorBalls0[i] = sectorBalls[i];
             resetBalls( i ++ );
         }
-        sector = 0 ;
-        haveIteratedSectors = false ;
     }
-    
-    void iterateSectors(){
-        iterate( sectorBalls , sectorMin , sectorMax );
-        while( ! areSectorsValid() ){
-            iterate( sectorBalls , sectorMin , sectorMax );
+
+    /**
+     * Restricts the factory to one of several disjoint partitions of the
+     * sequence of masks. The sequence is restarted at its natural start
+     * position and the factory then returns the masks at positions part,
+     * part + nParts, part + 2 * nParts ... so that factories of the same
+     * type and size with the same number of partitions and different
+     * values of part between them cover the sequence once, no matter
+     * whether they run in one process or several. The masks between the
+     * partition's own are stepped over rather than tested, which is cheap
+     * compared to composition. Shuffling would abandon the partition.
+     * @param part partition to be generated, from 0 to nParts - 1
+     * @param nParts number of partitions
+     * @throws Exception thrown if part lies outside the valid range
+     */
+
+    public void setPartition( int part , int nParts ) throws Exception {
+        if( nParts < 1 || part < 0 || part >= nParts ){
+            throw new Exception("Partition " + part + " of " + nParts + " is invalid");
         }
-        haveIteratedSectors = true ;
-    }
-    
-    boolean hasMoreSectors(){
-        if( ! haveIteratedSectors ){
-            return true ;
+        this.nParts = nParts ;
+        resetSectors();
+        if( ! exhausted ){
+            populateMask();
         }
         int i = 0 ;
-        while( i < nSectors ){
-            if( sectorBalls[i] != sectorBalls0[i] ){
-                return true ;
-            }
+        while( i < part && ! exhausted ){
+            iterate();
             ++ i ;
         }
-        return false ;
     }
 
     /**
-     * Generates the next mask. It's (temporarily not) guaranteed that the new mask
-     * will not simply be a reflection of an earlier mask. 
+     * Generates the next mask. The sequence is exhausted once it returns
+     * to the allocation at which it started.
      */
     
     public void iterate(){
-        if( hasMoreBalls( sector ) ){
-            iterateBalls( sector );
-        } else if( hasMoreSectors() ) {
+        int s = nSectors ;
+        while( -- s >= 0 && iterateBalls( s ) );
+        if( s < 0 ){
             iterateSectors();
-        } else {
-            resetSectors();
+            s = 0 ;
+            while( s < nSectors ){
+                resetBalls( s ++ );
+            }
+            exhausted = Arrays.equals( sectorBalls , sectorBalls0 );
         }
         populateMask();
     }
@@ -415,27 +468,100 @@ public abstract class MaskFactory implements Enumeration {
     
     void shuffle(){
         randomlyAllocate( sectorBalls , sectorMin , sectorMax );   
-        while( ! areSectorsValid() ){
-            iterate( sectorBalls , sectorMin , sectorMax );   
+        exhausted = ! isAllocationValid() && ! iterateSectors();
+        if( exhausted ){
+            return ;
         }
-        haveIteratedSectors = false ;
+        System.arraycopy( sectorBalls , 0 , sectorBalls0 , 0 , nSectors );
         int i , s = 0 ;
         while( s < nSectors ){
-            sectorBalls0[s] = sectorBalls[s];
-            g[s] = new int[1+sectorBalls[s]];
-            g0[s] = new int[1+sectorBalls[s]];
-            randomlyAllocate( g[s] , sectorSlots[s] - sectorBalls[s] );
-            haveIteratedBalls[s] = false ;
+            resetBalls( s );
             i = 0 ;
             while( i < sectorBalls[s] ){
-                g0[s][i] = g[s][i];
-                ++ i ;
+                g[s][i++] = 0 ;
             }
+            g[s][sectorBalls[s]] = 0 ;
+            randomlyAllocate( g[s] , sectorSlots[s] - sectorBalls[s] );
+            System.arraycopy( g[s] , 0 , g0[s] , 0 , g[s].length );
             ++ s ;   
         }
         populateMask();
     }
     
+    /**
+     * Returns the position of the factory in its iterative sequence as a
+     * flat array of integers, which holds the number of filled cells
+     * followed by the cursors for each sector. A factory of the same type
+     * and size that is set to the position will go on to generate the same
+     * sequence of masks, starting with the mask that this factory would
+     * return next.
+     */
+
+    public int[] getPosition(){
+        int i , s , length = 3 ;
+        s = 0 ;
+        while( s < nSectors ){
+            if( g[s] instanceof int[] ){
+                length += 2 * g[s].length ;
+            }
+            length += 3 ;
+            ++ s ;
+        }
+        int[] position = new int[length];
+        i = 0 ;
+        position[i++] = filledCells ;
+        position[i++] = nSectors ;
+        position[i++] = exhausted ? 1 : 0 ;
+        s = 0 ;
+        while( s < nSectors ){
+            position[i++] = sectorBalls[s];
+            position[i++] = sectorBalls0[s];
+            if( g[s] instanceof int[] ){
+                position[i++] = g[s].length ;
+                System.arraycopy( g[s] , 0 , position , i , g[s].length );
+                i += g[s].length ;
+                System.arraycopy( g0[s] , 0 , position , i , g0[s].length );
+                i += g0[s].length ;
+            } else {
+                position[i++] = 0 ;
+            }
+            ++ s ;
+        }
+        return position ;
+    }
+
+    /**
+     * Restores a position returned by <code>getPosition()</code>.
+     * @param position position in the iterative sequence
+     * @throws Exception thrown if the position was taken from a factory
+     * with a different number of sectors or filled cells
+     */
+
+    public void setPosition( int[] position ) throws Exception {
+        if( position.length < 3 || position[0] != filledCells || position[1] != nSectors ){
+            throw new Exception("The mask position doesn't match the mask factory");
+        }
+        int i , s , length ;
+        i = 2 ;
+        exhausted = position[i++] == 1 ;
+        s = 0 ;
+        while( s < nSectors ){
+            sectorBalls[s] = position[i++];
+            sectorBalls0[s] = position[i++];
+            length = position[i++];
+            g[s] = new int[length];
+            g0[s] = new int[length];
+            System.arraycopy( position , i , g[s] , 0 , length );
+            i += length ;
+            System.arraycopy( position , i , g0[s] , 0 , length );
+            i += length ;
+            ++ s ;
+        }
+        if( ! exhausted ){
+            populateMask();
+        }
+    }
+    
     /**
      * Writes the mask as a string.
      */
@@ -466,7 +592,7 @@ public abstract class MaskFactory implements Enumeration {
      */
     
     public boolean hasMoreElements(){
-        return hasMoreSectors() || hasMoreBalls( sector );
+        return ! exhausted ;
     }
     
     /**
@@ -476,7 +602,7 @@ public abstract class MaskFactory implements Enumeration {
      */
     
     public Object nextElement(){
-        if( hasMoreElements() ){
+        if( ! exhausted ){
             int r , c ;
             r = 0 ;
             while( r < cellsInRow ){
@@ -487,7 +613,11 @@ public abstract class MaskFactory implements Enumeration {
                 }
                 ++ r ;
             }
-            iterate();
+            int i = 0 ;
+            while( i < nParts && ! exhausted ){
+                iterate();
+                ++ i ;
+            }
             return previousMask ;
         } else {
             throw new NoSuchElementException();
@@ -1040,28 +1170,88 @@ public abstract class MaskFactory implements Enumeration {
         return true ;
     }
     
+    /**
+     * Counts the masks in the factory's class, i.e. the masks with the
+     * required number of filled cells and the symmetry of the factory,
+     * without generating them. Each symmetry class partitions the grid into
+     * sectors, within which the slots are orbits of cells under the class's
+     * symmetry group, so the count is the sum over the valid allocations of
+     * balls to sectors of the product of the number of ways to place the
+     * balls in each sector. The count equals the length of the iterative
+     * sequence.
+     */
+
+    public BigInteger countMasks(){
+        int[] allocation = new int[nSectors];
+        System.arraycopy( sectorBalls , 0 , allocation , 0 , nSectors );
+        BigInteger count = BigInteger.ZERO , product ;
+        int s ;
+        s = 0 ;
+        while( s < nSectors ){
+            sectorBalls[s] = sectorMin[s];
+            ++ s ;
+        }
+        do {
+            if( isAllocationValid() ){
+                product = BigInteger.ONE ;
+                s = 0 ;
+                while( s < nSectors ){
+                    product = product.multiply( choose( sectorSlots[s] , sectorBalls[s] ) );
+                    ++ s ;
+                }
+                count = count.add( product );
+            }
+            iterate( sectorBalls , sectorMin , sectorMax );
+            s = 0 ;
+            while( s < nSectors && sectorBalls[s] == sectorMin[s] ){
+                ++ s ;
+            }
+        } while( s < nSectors );
+        System.arraycopy( allocation , 0 , sectorBalls , 0 , nSectors );
+        return count ;
+    }
+
+    /**
+     * Calculates the binomial coefficient n choose k.
+     */
+
+    static BigInteger choose( int n , int k ){
+        if( k < 0 || k > n ){
+            return BigInteger.ZERO ;
+        }
+        BigInteger c = BigInteger.ONE ;
+        int i = 0 ;
+        while( i < k ){
+            c = c.multiply( BigInteger.valueOf( n - i ) ).divide( BigInteger.valueOf( i + 1 ) );
+            ++ i ;
+        }
+        return c ;
+    }
+    
     /**
      * Class test program takes the form MaskFactory [-c cellsInRow]
-     * [-r|-i|-a boxes across] [-d] filledCells. When the -a option 
-     * is stipulated, the factory will ensure that the sequence starts 
-     * at a mask where the filled cells are distributed evenly across
-     * the grid. When -r is selected, the sequence will start at a random 
-     * position while when -i is selected, the initial mask will be read from
-     * standard input. The option -t requests trace output. Defaults are nine cells 
-     * in a row and no debug. 
+     * [-a boxes across] [-mask type] [-e] [-v] -i|filledCells. The
+     * program counts the masks of the given type (by default, Rotate2)
+     * combinatorially, which is practical for any grid size. The -e option
+     * requests that the masks should instead be counted by iteration from
+     * the natural start of the sequence and -v that they should also be
+     * listed. When -i is selected, the mask will be read from standard
+     * input. The number of boxes across is only required by the Translate
+     * type. The default grid has nine cells in a row.
      */
     
     public static void main( String[] args ){
        int i , 
            size = 9 , 
            filledCells = 0 ,
-           boxesAcross = 0 ;
+           boxesAcross = 0 ,
+           maskType = MaskUtils.ROTATE_2 ;
            
        boolean debug = false ,
-               random = false ,
+               enumerate = false ,
                standardInput = false ;
                
-       final String usage = "Usage: MaskFactory [-c cellsInRow] [-r|-a boxes across] [-v] -i|filledCells";
+       final String usage = "Usage: MaskFactory [-c cellsInRow] [-a boxes across] [-mask type] [-e] [-v] -i|filledCells";
        
        // Parse command-line arguments. 
        if( args.length == 0 ){
@@ -1071,9 +1261,9 @@ public abstract class MaskFactory implements Enumeration {
        i = 0 ;
        while( i < args.length - 1 ){
            if( args[i].equals("-v") ){
-               debug = true ;
-           } else if( args[i].equals("-r") ){
-               random = true ;
+               debug = enumerate = true ;
+           } else if( args[i].equals("-e") ){
+               enumerate = true ;
            } else if( args[i].equals("-c") ){
                try {
                    size = Integer.parseInt( args[++i] );
@@ -1088,6 +1278,13 @@ public abstract class MaskFactory implements Enumeration {
                    System.err.println( usage );
                    System.exit( 1 );
                }
+           } else if( args[i].equals("-mask") ){
+               try {
+                   maskType = MaskUtils.getMaskType( args[++i] );
+               } catch ( Exception e ) {
+                   System.err.println( e.getMessage() );
+                   System.exit( 1 );
+               }
            } else {
                System.err.println( usage );
                System.exit( 1 );
@@ -1098,10 +1295,6 @@ public abstract class MaskFactory implements Enumeration {
            System.err.println("Numbers of boxes across and cells per row are incompatible");
            System.exit( 2 );
        }
-       if( random && boxesAcross != 0 ){
-           System.err.println("The -a and -r options are mutually exclusive");
-           System.exit( 2 );
-       }
        try {
            filledCells = Integer.parseInt( args[i] );
        } catch ( NumberFormatException e ) {
@@ -1112,51 +1305,51 @@ public abstract class MaskFactory implements Enumeration {
                System.exit( 1 );
            }
        }
-       // Initiate the mask sequence.
-/*       
+       // Create the factory.
+       MaskFactory maskFactory = null ;
        try {        
-           MaskFactory maskFactory = null ;
+           boolean[][] mask = null ;
            if( standardInput ){
                String text ;
-               StringBuffer maskText = new StringBuffer();
+               StringBuilder maskText = new StringBuilder();
                BufferedReader standardInputReader = new BufferedReader( new InputStreamReader( System.in ) );
-               try {
-                   while( ( text = standardInputReader.readLine() ) != null ){
-                       if( text.length() == 0 ){
-                           break ;
-                       }
-                       maskText.append( text );
-                       maskText.append('\n');
+               while( ( text = standardInputReader.readLine() ) != null ){
+                   if( text.length() == 0 ){
+                       break ;
                    }
-               } catch ( IOException e ) {
-                   System.err.println( e.getMessage() );
-                   System.exit( 3 );               
+                   maskText.append( text );
+                   maskText.append('\n');
                }
-               maskFactory = new MaskFactory( maskText.toString() );
-           } else if( boxesAcross > 0 ){
-               maskFactory = new MaskFactory( size , filledCells , boxesAcross );
-           } else if( random ) {
-               maskFactory = new MaskFactory( size , filledCells , true );
-           } else {
-               maskFactory = new MaskFactory( size , filledCells );               
+               mask = new boolean[size][size];
+               populate( mask , maskText.toString() );
+               maskType = MaskUtils.USER_DEFINED ;
            }
+           maskFactory = MaskUtils.createMaskFactory( maskType , size , boxesAcross , mask );
+           filledCells = maskFactory.setFilledCells( filledCells );
        } catch ( Exception e ) {
            System.err.println( e.getMessage() );
            System.exit( 2 );
        }
-       
+       if( ! enumerate ){
+           System.out.println( maskFactory.countMasks() + " distinct masks with " + filledCells + " filled cells");
+           return ;
+       }
        // Iterate through.
-       i = 0 ;
+       try {
+           maskFactory.setPartition( 0 , 1 );
+       } catch ( Exception e ) {
+           System.err.println( e.getMessage() );
+           System.exit( 2 );
+       }
+       long n = 0 ;
        while( maskFactory.hasMoreElements() ){
-           ++ i ;
+           ++ n ;
            if( debug ){
-               System.out.println( i + "." );
+               System.out.println( n + "." );
                System.out.println( maskFactory.toString() );    
            }
            maskFactory.nextElement();
        }
-       
-       System.out.println( i + " distinct masks found");
-*/
+       System.out.println( n + " masks found in the sequence");
     }
 }
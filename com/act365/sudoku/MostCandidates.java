@@ -55,6 +55,15 @@ public class MostCandidates extends StrategyBase implements IStrategy {
     public void setup( Grid grid ) throws Exception {
         super.setup( grid );
     }
+    
+    /**
+     * Chooses whether the state grid should use an undo log.
+     * @see com.act365.sudoku.StrategyBase#setUndoLog(boolean)
+     */
+    
+    public void setUndoLog( boolean useUndoLog ){
+        ((InvulnerableState) state).setUndoLog( useUndoLog );
+    }
 
 	/**
      * Finds the candidates for which nInvunerable is lowest.
@@ -46,4 +46,18 @@ public abstract class MoveException extends Exception {
     public int getY() { return y ;}
     
     public int getValue() { return value ;}
+    
+    /**
+     * Throws the exception that corresponds to a status value
+     * returned by IState.tryAddMove() for the move (x,y):=value.
+     */
+    
+    public static void check( int status , int x , int y , int value ) throws MoveException {
+        switch( status ){
+            case IState.MOVE_ALREADY_ELIMINATED :
+                throw new MoveAlreadyEliminatedException( x , y , value );
+            case IState.MOVE_CANT_BE_ELIMINATED :
+                throw new MoveCantBeEliminatedException( x , y , value );
+        }
+    }
 }
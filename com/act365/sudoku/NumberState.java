@@ -29,6 +29,11 @@ package com.act365.sudoku;
  * NumberState records the number of candidates remain for each
  * value/sector on the grid, where a sector is any row, column
  * or subgrid.
+ * The thread is either stored as a stack of snapshots or, when an
+ * undo log is used, as a list of the individual changes.
+ * Snapshots are allocated on demand, so that memory use follows the
+ * depth of the search rather than the number of cells on the grid.
+ * @see UndoLog
  */
 
 public class NumberState implements IState {
@@ -55,6 +60,42 @@ public class NumberState implements IState {
     
     boolean[][][] threadIsFilled ;
     
+    UndoLog undoLog ;
+    
+    transient long threadFootprint ;
+    
+    /**
+     * Creates a NumberState instance that stores the thread as snapshots.
+     */
+    
+    public NumberState(){
+        this( false );
+    }
+    
+    /**
+     * Creates a NumberState instance.
+     * @param useUndoLog whether the thread should be stored as an undo log rather than as snapshots
+     */
+    
+    public NumberState( boolean useUndoLog ){
+        if( useUndoLog ){
+            undoLog = new UndoLog();
+        }
+    }
+    
+    /**
+     * Chooses whether the thread should be stored as an undo log. A change
+     * takes effect at the next call to setup().
+     * @param useUndoLog whether the thread should be stored as an undo log rather than as snapshots
+     */
+    
+    public void setUndoLog( boolean useUndoLog ){
+        if( useUndoLog != undoLog instanceof UndoLog ){
+            undoLog = useUndoLog ? new UndoLog() : null ;
+            cellsInRow = 0 ;
+        }
+    }
+    
     /**
      * Sets the state grid to the appropriate size.
      * @see com.act365.sudoku.IState#setup(int,int)
@@ -75,9 +116,12 @@ public class NumberState implements IState {
             nEliminated = new byte[cellsInRow][3*cellsInRow];
             isFilled = new boolean[cellsInRow][3*cellsInRow];
         
-            threadEliminated = new boolean[cellsInRow*cellsInRow][cellsInRow][3*cellsInRow][cellsInRow];
-            threadNEliminated = new byte[cellsInRow*cellsInRow][cellsInRow][3*cellsInRow];
-            threadIsFilled = new boolean[cellsInRow*cellsInRow][cellsInRow][3*cellsInRow];
+            if( ! ( undoLog instanceof UndoLog ) ){
+                threadEliminated = new boolean[cellsInRow*cellsInRow][][][];
+                threadNEliminated = new byte[cellsInRow*cellsInRow][][];
+                threadIsFilled = new boolean[cellsInRow*cellsInRow][][];
+                threadFootprint = 0 ;
+            }
         } else {
             i = 0 ;
             while( i < cellsInRow ){
@@ -96,6 +140,9 @@ public class NumberState implements IState {
                 ++ i ;
             }
         }
+        if( undoLog instanceof UndoLog ){
+            undoLog.setup( cellsInRow * cellsInRow );
+        }
 	}
 
     /**
@@ -104,6 +151,16 @@ public class NumberState implements IState {
      */
           
 	public void pushState(int nMoves ) {
+        if( undoLog instanceof UndoLog ){
+            undoLog.mark( nMoves );
+            return ;
+        }
+        if( threadEliminated[nMoves] == null ){
+            threadEliminated[nMoves] = new boolean[cellsInRow][3*cellsInRow][cellsInRow];
+            threadNEliminated[nMoves] = new byte[cellsInRow][3*cellsInRow];
+            threadIsFilled[nMoves] = new boolean[cellsInRow][3*cellsInRow];
+            threadFootprint += 3 * cellsInRow * cellsInRow *( cellsInRow + 2 );
+        }
         int i, j , k ;
         i = 0 ;
         while( i < cellsInRow ){
@@ -129,6 +186,26 @@ public class NumberState implements IState {
      
      
 	public void popState( int nMoves ) {
+        if( undoLog instanceof UndoLog ){
+            final int mark = undoLog.getMark( nMoves ) ,
+                      nSectors = 3 * cellsInRow ,
+                      nEliminations = cellsInRow * nSectors * cellsInRow ;
+            int location ;
+            while( undoLog.size > mark ){
+                location = undoLog.locations[-- undoLog.size];
+                if( location < nEliminations ){
+                    eliminated[location/cellsInRow/nSectors][location/cellsInRow%nSectors][location%cellsInRow] = undoLog.oldValues[undoLog.size] != 0 ;
+                    -- nEliminated[location/cellsInRow/nSectors][location/cellsInRow%nSectors];
+                } else {
+                    location -= nEliminations ;
+                    isFilled[location/nSectors][location%nSectors] = undoLog.oldValues[undoLog.size] != 0 ;
+                }
+            }
+            return ;
+        }
+        if( threadEliminated[nMoves] == null ){
+            return ;
+        }
         int i , j , k ;
         i = 0 ;
         while( i < cellsInRow ){
@@ -154,6 +231,16 @@ public class NumberState implements IState {
      */
 
 	public void addMove(int x, int y, int value ) throws MoveException {
+        MoveException.check( tryAddMove( x , y , value ) , x , y , value );
+    }
+
+    /**
+     * Adds the move (x,y):=v to the state grid without throwing an exception.
+     * @param value is in the range [0,cellsInRow), not [1,cellsInRow]. 
+     * @see com.act365.sudoku.IState#tryAddMove(int, int, int)
+     */
+
+	public int tryAddMove(int x, int y, int value ) {
         int i , j ;
         int boxSector = 2 * cellsInRow + x / boxesAcross * boxesAcross + y / boxesDown ,
             boxPosition = x % boxesAcross * boxesDown + y % boxesDown ;
@@ -161,12 +248,12 @@ public class NumberState implements IState {
         if( eliminated[value][x][y] || 
             eliminated[value][cellsInRow+y][x] || 
             eliminated[value][boxSector][boxPosition] ){
-                throw new MoveAlreadyEliminatedException( x , y , value );
+                return MOVE_ALREADY_ELIMINATED ;
         }
         // Note which sectors have been filled.
-        isFilled[value][x] = true ;
-        isFilled[value][cellsInRow+y] = true ;
-        isFilled[value][boxSector] = true ;
+        setFilled( value , x , true );
+        setFilled( value , cellsInRow+y , true );
+        setFilled( value , boxSector , true );
         // Eliminate the current value from other cells in its 
         // ... row (x,i)
         boxSector = 2 * cellsInRow + x / boxesAcross * boxesAcross ;
@@ -177,20 +264,17 @@ public class NumberState implements IState {
                 continue ;
             }
             if( ! eliminated[value][x][i] ){
-                eliminated[value][x][i] = true ;
-                ++ nEliminated[value][x];
+                eliminate( value , x , i );
             }
             if( ! eliminated[value][cellsInRow+i][x] ){
-                eliminated[value][cellsInRow+i][x] = true ;
-                ++ nEliminated[value][cellsInRow+i];
+                eliminate( value , cellsInRow+i , x );
             }
             if( ! eliminated[value][boxSector+i/boxesDown][boxPosition+i%boxesDown] ){
-                eliminated[value][boxSector+i/boxesDown][boxPosition+i%boxesDown] = true ;
-                ++ nEliminated[value][boxSector+i/boxesDown];
+                eliminate( value , boxSector+i/boxesDown , boxPosition+i%boxesDown );
             }
         }
         if( nEliminated[value][x] != cellsInRow - 1 ){
-            throw new MoveCantBeEliminatedException( x , y , value );
+            return MOVE_CANT_BE_ELIMINATED ;
         }
         // ... column (i,y) 
         i = -1 ;
@@ -201,20 +285,17 @@ public class NumberState implements IState {
                 continue ;
             }
             if( ! eliminated[value][i][y] ){
-                eliminated[value][i][y] = true ;
-                ++ nEliminated[value][i];
+                eliminate( value , i , y );
             }
             if( ! eliminated[value][cellsInRow+y][i] ){
-                eliminated[value][cellsInRow+y][i] = true ;
-                ++ nEliminated[value][cellsInRow+y];
+                eliminate( value , cellsInRow+y , i );
             }
             if( ! eliminated[value][boxSector+i/boxesAcross*boxesAcross][boxPosition+i%boxesAcross*boxesDown] ){
-                eliminated[value][boxSector+i/boxesAcross*boxesAcross][boxPosition+i%boxesAcross*boxesDown] = true ;
-                ++ nEliminated[value][boxSector+i/boxesAcross*boxesAcross];
+                eliminate( value , boxSector+i/boxesAcross*boxesAcross , boxPosition+i%boxesAcross*boxesDown );
             }
         }
         if( nEliminated[value][cellsInRow+y] != cellsInRow - 1 ){
-            throw new MoveCantBeEliminatedException( x , y , value );
+            return MOVE_CANT_BE_ELIMINATED ;
         }
         // ... subgrid
         i = x / boxesAcross * boxesAcross - 1 ;
@@ -225,12 +306,10 @@ public class NumberState implements IState {
                     continue ;
                 }
                 if( ! eliminated[value][i][j] ){
-                    eliminated[value][i][j] = true ;
-                    ++ nEliminated[value][i];
+                    eliminate( value , i , j );
                 }
                 if( ! eliminated[value][cellsInRow+j][i] ){
-                    eliminated[value][cellsInRow+j][i] = true ;
-                    ++ nEliminated[value][cellsInRow+j];
+                    eliminate( value , cellsInRow+j , i );
                 }
             }
         }
@@ -242,37 +321,34 @@ public class NumberState implements IState {
                 continue ;    
             }
             if( ! eliminated[value][boxSector][i] ){
-                eliminated[value][boxSector][i] = true ;
-                ++ nEliminated[value][boxSector];
+                eliminate( value , boxSector , i );
             }
         }
         if( nEliminated[value][boxSector] != cellsInRow - 1 ){
-            throw new MoveCantBeEliminatedException( boxSector / boxesAcross , boxSector % boxesAcross , value );
+            return MOVE_CANT_BE_ELIMINATED ;
         }
         // Eliminate other values as candidates for the current row.
         i = -1 ;
         while( ++ i < cellsInRow ){
             if( i != value && ! eliminated[i][x][y] ){
-                eliminated[i][x][y] = true ;
-                ++ nEliminated[i][x];
+                eliminate( i , x , y );
             }
         }
         // Eliminate other values as candidates for the current column.
         i = -1 ;
         while( ++ i < cellsInRow ){
             if( i != value && ! eliminated[i][cellsInRow+y][x] ){
-                eliminated[i][cellsInRow+y][x] = true ;
-                ++ nEliminated[i][cellsInRow+y];
+                eliminate( i , cellsInRow+y , x );
             }
         }
         // Eliminate other values as candidates for the current subgrid.
         i = -1 ;
         while( ++ i < cellsInRow ){
             if( i != value && ! eliminated[i][boxSector][boxPosition] ){
-                eliminated[i][boxSector][boxPosition] = true ;
-                ++ nEliminated[i][boxSector];
+                eliminate( i , boxSector , boxPosition );
             }
         }
+        return MOVE_ADDED ;
 	}
 
     /**
@@ -283,17 +359,49 @@ public class NumberState implements IState {
      
 	public void eliminateMove(int x, int y, int value ) {
         final int boxSector = 2 * cellsInRow + x / boxesAcross * boxesAcross + y / boxesDown ;
-        eliminated[value][x][y] = true ;
-        ++ nEliminated[value][x];
-        eliminated[value][cellsInRow+y][x] = true ;
-        ++ nEliminated[value][cellsInRow+y];
-        eliminated[value][boxSector][x%boxesAcross*boxesDown+y%boxesDown] = true ;
-        ++ nEliminated[value][boxSector];
-        isFilled[value][x] = false ;
-        isFilled[value][cellsInRow+y] = false ;
-        isFilled[value][boxSector] = false ;
+        eliminate( value , x , y );
+        eliminate( value , cellsInRow+y , x );
+        eliminate( value , boxSector , x%boxesAcross*boxesDown+y%boxesDown );
+        setFilled( value , x , false );
+        setFilled( value , cellsInRow+y , false );
+        setFilled( value , boxSector , false );
 	}
 
+    /**
+     * Returns the number of bytes allocated for snapshots or, when an
+     * undo log is used, the peak size of the log.
+     * @see com.act365.sudoku.IState#getThreadFootprint()
+     */
+    
+    public long getThreadFootprint(){
+        return undoLog instanceof UndoLog ? 12L * undoLog.getMaxSize() : threadFootprint ;
+    }
+    
+    /**
+     * Eliminates the given value from the given position within a sector
+     * and records the change in the undo log where one is used.
+     */
+    
+    void eliminate( int value , int sector , int position ){
+        if( undoLog instanceof UndoLog ){
+            undoLog.record( ( value * 3 * cellsInRow + sector )* cellsInRow + position , eliminated[value][sector][position] ? 1 : 0 );
+        }
+        eliminated[value][sector][position] = true ;
+        ++ nEliminated[value][sector];
+    }
+    
+    /**
+     * Notes whether the given value has been placed in a sector
+     * and records the change in the undo log where one is used.
+     */
+    
+    void setFilled( int value , int sector , boolean filled ){
+        if( undoLog instanceof UndoLog ){
+            undoLog.record( cellsInRow * 3 * cellsInRow * cellsInRow + value * 3 * cellsInRow + sector , isFilled[value][sector] ? 1 : 0 );
+        }
+        isFilled[value][sector] = filled ;
+    }
+    
     /**
      * Produces a string representation of the state grid.
      */
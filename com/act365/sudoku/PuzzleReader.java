@@ -0,0 +1,122 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+import java.io.* ;
+
+/**
+ * A PuzzleReader reads a stream of puzzles. Each puzzle is either
+ * written on a single line, in the format created by <code>Grid.toLine()</code>,
+ * or spread over several lines, in the format created by <code>Grid.toString()</code>,
+ * and terminated by a blank line. Lines that start with '#' are ignored.
+ */
+
+public class PuzzleReader {
+
+    BufferedReader reader ;
+
+    transient int nPuzzles ;
+
+    /**
+     * Creates a PuzzleReader instance.
+     * @param reader source of puzzles
+     */
+
+    public PuzzleReader( Reader reader ){
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader( reader );
+    }
+
+    /**
+     * Reads the next puzzle from the stream into the given grid.
+     * The grid will be resized if necessary.
+     * @return false if the end of the stream has been reached
+     * @throws IOException if the stream can't be read
+     * @throws Exception if the puzzle is badly formed
+     */
+
+    public boolean read( Grid grid ) throws Exception {
+        String text , trimmed ;
+        StringBuilder gridText = null ;
+        while( ( text = reader.readLine() ) != null ){
+            trimmed = text.trim();
+            if( trimmed.length() == 0 ){
+                if( gridText instanceof StringBuilder ){
+                    break ;
+                }
+                continue ;
+            }
+            if( trimmed.charAt( 0 ) == '#' ){
+                continue ;
+            }
+            if( gridText == null && isLine( trimmed ) ){
+                ++ nPuzzles ;
+                grid.populateLine( trimmed );
+                return true ;
+            }
+            if( gridText == null ){
+                gridText = new StringBuilder();
+            }
+            gridText.append( text );
+            gridText.append('\n');
+        }
+        if( gridText == null ){
+            return false ;
+        }
+        ++ nPuzzles ;
+        grid.populate( gridText.toString() );
+        return true ;
+    }
+
+    /**
+     * Returns the number of puzzles read so far.
+     */
+
+    public int getNumberOfPuzzles(){
+        return nPuzzles ;
+    }
+
+    /**
+     * Determines whether the given text represents a single-line puzzle,
+     * i.e. whether it contains no whitespace and its length is the square
+     * of a plausible row length.
+     */
+
+    static boolean isLine( String text ){
+        final int length = text.length() ,
+                  cellsInRow = (int) Math.sqrt( length );
+        if( cellsInRow < 4 || cellsInRow * cellsInRow != length ){
+            return false ;
+        }
+        int i = 0 ;
+        while( i < length ){
+            if( Character.isWhitespace( text.charAt( i ) ) ){
+                return false ;
+            }
+            ++ i ;
+        }
+        return true ;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+import java.io.* ;
+import java.nio.* ;
+import java.nio.channels.* ;
+import java.util.* ;
+
+/**
+ * A PuzzleStore is a compact binary file of puzzles, to which puzzles
+ * may be appended across any number of runs and from which any puzzle
+ * may be fetched by its serial number in constant time.
+ * <p>
+ * The file starts with a header that records the grid dimensions and
+ * is followed by fixed-width records, each of which holds the
+ * complexity and unwinds of the puzzle, its cells, packed two to a
+ * byte for grids of up to 15 values and one to a byte otherwise, and
+ * the words of the key of its canonical form. A 9x9 puzzle therefore
+ * takes 97 bytes. Record n starts at byte HEADER_SIZE + n * recordSize,
+ * so no index is needed, and a record left incomplete by a crash is
+ * discarded when the store is next opened.
+ * <p>
+ * Reads are made through memory-mapped segments of the file, each of
+ * which holds a whole number of records and is under 2GB long, since
+ * that is the limit of a single mapping. The segments are extended as
+ * the store grows. Appends and reads may be made from different threads.
+ */
+
+public class PuzzleStore {
+
+    final static int MAGIC = 0x53754450 , // "SuDP"
+                     VERSION = 2 ,
+                     HEADER_SIZE = 16 ,
+                     MAX_SEGMENT_SIZE = 1 << 30 ;
+
+    final int boxesAcross ,
+              boxesDown ,
+              cellsInRow ,
+              bitsPerCell ,
+              keyWords ,
+              keyOffset ,
+              recordSize ,
+              recordsPerSegment ;
+
+    final String filename ;
+
+    final RandomAccessFile data ;
+
+    final ByteBuffer record ;
+
+    transient volatile int size ;
+
+    // The number of records covered by the mapped segments.
+
+    transient int mappedSize ;
+
+    transient MappedByteBuffer[] segments ;
+
+    /**
+     * Opens the store held in the given file or, if the file doesn't
+     * exist, creates an empty store.
+     * @param filename name of the file
+     * @param boxesAcross dimension of the puzzles held in the store
+     * @param boxesDown dimension of the puzzles held in the store
+     * @throws IOException if the file can't be opened or the existing
+     * store holds puzzles of different dimensions
+     */
+
+    public PuzzleStore( String filename , int boxesAcross , int boxesDown ) throws IOException {
+        this.filename = filename ;
+        this.boxesAcross = boxesAcross ;
+        this.boxesDown = boxesDown ;
+        cellsInRow = boxesAcross * boxesDown ;
+        bitsPerCell = cellsInRow < 16 ? 4 : 8 ;
+        // The key packs its cells as GridKey does.
+        final int cellsPerKeyWord = 64 /( 32 - Integer.numberOfLeadingZeros( cellsInRow ) );
+        keyWords = ( cellsInRow * cellsInRow + cellsPerKeyWord - 1 )/ cellsPerKeyWord ;
+        keyOffset = 8 + ( cellsInRow * cellsInRow * bitsPerCell + 7 )/ 8 ;
+        recordSize = keyOffset + 8 * keyWords ;
+        recordsPerSegment = Math.max( 1 , MAX_SEGMENT_SIZE / recordSize );
+        record = ByteBuffer.allocate( recordSize );
+        segments = new MappedByteBuffer[0];
+        data = new RandomAccessFile( filename , "rw" );
+        if( data.length() == 0 ){
+            data.writeInt( MAGIC );
+            data.writeInt( VERSION );
+            data.writeInt( boxesAcross );
+            data.writeInt( boxesDown );
+        } else if( data.length() < HEADER_SIZE || data.readInt() != MAGIC || data.readInt() != VERSION ){
+            close();
+            throw new IOException( filename + " is not a puzzle store");
+        } else if( data.readInt() != boxesAcross || data.readInt() != boxesDown ){
+            close();
+            throw new IOException( filename + " holds puzzles of different dimensions");
+        }
+        // Discard any record that wasn't written in full.
+        size = (int)( ( data.length() - HEADER_SIZE )/ recordSize );
+        data.setLength( position( size ) );
+    }
+
+    /**
+     * Opens an existing store, taking the dimensions from its header.
+     * @param filename name of the file
+     * @throws IOException if the file can't be read or isn't a puzzle store
+     */
+
+    public static PuzzleStore open( String filename ) throws IOException {
+        DataInputStream header = new DataInputStream( new FileInputStream( filename ) );
+        try {
+            if( header.readInt() != MAGIC || header.readInt() != VERSION ){
+                throw new IOException( filename + " is not a puzzle store");
+            }
+            return new PuzzleStore( filename , header.readInt() , header.readInt() );
+        } catch ( EOFException e ) {
+            throw new IOException( filename + " is not a puzzle store");
+        } finally {
+            header.close();
+        }
+    }
+
+    /**
+     * Returns the number of puzzles in the store.
+     */
+
+    public int size(){
+        return size ;
+    }
+
+    /**
+     * Returns the position in the file of the given record.
+     */
+
+    long position( int n ){
+        return HEADER_SIZE + (long) n * recordSize ;
+    }
+
+    /**
+     * Appends a puzzle to the store.
+     * @param puzzle puzzle to be stored
+     * @param key key of the canonical form of the puzzle
+     * @param complexity complexity of the puzzle
+     * @param unwinds number of unwinds required to solve the puzzle
+     * @return the serial number (from 0) of the new puzzle
+     */
+
+    public synchronized int append( Grid puzzle , GridKey key , int complexity , int unwinds ) throws IOException {
+        if( puzzle.boxesAcross != boxesAcross || puzzle.boxesDown != boxesDown ||
+            key.boxesAcross != boxesAcross || key.boxesDown != boxesDown ){
+            throw new IOException("The puzzle and the store have different dimensions");
+        }
+        final long position = position( size );
+        int r , c , cell = 0 ;
+        record.clear();
+        record.putInt( complexity );
+        record.putInt( unwinds );
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                if( bitsPerCell == 8 ){
+                    record.put( puzzle.data[r][c] );
+                } else if( cell % 2 == 0 ){
+                    record.put( (byte)( puzzle.data[r][c] << 4 ) );
+                } else {
+                    record.put( record.position() - 1 , (byte)( record.get( record.position() - 1 ) | puzzle.data[r][c] ) );
+                }
+                ++ cell ;
+                ++ c ;
+            }
+            ++ r ;
+        }
+        record.position( keyOffset );
+        r = 0 ;
+        while( r < keyWords ){
+            record.putLong( key.words[r++] );
+        }
+        record.flip();
+        while( record.hasRemaining() ){
+            data.getChannel().write( record , position + record.position() );
+        }
+        return size ++ ;
+    }
+
+    /**
+     * Reads the given puzzle from the store.
+     * @param n serial number (from 0) of the puzzle
+     * @param grid grid to hold the puzzle, which will be resized if necessary
+     * @return the grid
+     */
+
+    public synchronized Grid get( int n , Grid grid ) throws IOException {
+        final ByteBuffer segment = map( n );
+        final int position = offset( n );
+        if( grid.boxesAcross != boxesAcross || grid.boxesDown != boxesDown ){
+            grid.resize( boxesAcross , boxesDown );
+        }
+        int r , c , cell = 0 ;
+        byte b ;
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                if( bitsPerCell == 8 ){
+                    grid.data[r][c] = segment.get( position + 8 + cell );
+                } else {
+                    b = segment.get( position + 8 + cell / 2 );
+                    grid.data[r][c] = (byte)( cell % 2 == 0 ? ( b >> 4 )& 0xf : b & 0xf );
+                }
+                ++ cell ;
+                ++ c ;
+            }
+            ++ r ;
+        }
+        return grid ;
+    }
+
+    /**
+     * Returns the complexity of the given puzzle, as recorded when it was stored.
+     */
+
+    public synchronized int getComplexity( int n ) throws IOException {
+        return map( n ).getInt( offset( n ) );
+    }
+
+    /**
+     * Returns the number of unwinds required to solve the given puzzle,
+     * as recorded when it was stored.
+     */
+
+    public synchronized int getUnwinds( int n ) throws IOException {
+        return map( n ).getInt( offset( n ) + 4 );
+    }
+
+    /**
+     * Returns the key of the canonical form of the given puzzle, as
+     * recorded when it was stored.
+     */
+
+    public synchronized GridKey getKey( int n ) throws IOException {
+        final ByteBuffer segment = map( n );
+        final int position = offset( n ) + keyOffset ;
+        long[] words = new long[keyWords];
+        int i = 0 ;
+        while( i < keyWords ){
+            words[i] = segment.getLong( position + 8 * i );
+            ++ i ;
+        }
+        return new GridKey( boxesAcross , boxesDown , words );
+    }
+
+    /**
+     * Returns the position of the given record within its segment.
+     */
+
+    int offset( int n ){
+        return ( n % recordsPerSegment )* recordSize ;
+    }
+
+    /**
+     * Ensures that the mapped segments cover the given puzzle and returns
+     * the segment that holds its record. The caller must hold the lock.
+     */
+
+    ByteBuffer map( int n ) throws IOException {
+        if( segments == null ){
+            throw new IOException("The store is closed");
+        }
+        if( n < 0 || n >= size ){
+            throw new IOException("Puzzle " + n + " is not in the store");
+        }
+        if( n >= mappedSize ){
+            // Segments that were full when they were mapped stay as they are.
+            final int nSegments = ( size + recordsPerSegment - 1 )/ recordsPerSegment ;
+            int s = mappedSize / recordsPerSegment ;
+            if( nSegments > segments.length ){
+                segments = Arrays.copyOf( segments , nSegments );
+            }
+            while( s < nSegments ){
+                segments[s] = data.getChannel().map( FileChannel.MapMode.READ_ONLY , 
+                                                     position( s * recordsPerSegment ) ,
+                                                     (long) Math.min( size - s * recordsPerSegment , recordsPerSegment )* recordSize );
+                ++ s ;
+            }
+            mappedSize = size ;
+        }
+        return segments[n/recordsPerSegment];
+    }
+
+    /**
+     * Closes the store.
+     */
+
+    public synchronized void close() throws IOException {
+        segments = null ;
+        data.close();
+    }
+
+    /**
+     * Command-line app to read a puzzle store.
+     * <br><code>PuzzleStore file [n]</code>
+     * <br>Without <code>n</code>, the app reports the number of puzzles in
+     * the store and lists them, one line per puzzle. Otherwise, it prints
+     * puzzle <code>n</code> (counted from 1) with its complexity and unwinds.
+     */
+
+    public static void main( String[] args ){
+        if( args.length < 1 || args.length > 2 ){
+            System.err.println("Usage: PuzzleStore file [n]");
+            System.exit( 1 );
+        }
+        try {
+            PuzzleStore store = open( args[0] );
+            Grid grid = new Grid();
+            if( args.length == 1 ){
+                System.out.println( store.size() + " puzzles");
+                int i = 0 ;
+                while( i < store.size() ){
+                    System.out.println( store.get( i , grid ).toLine() );
+                    ++ i ;
+                }
+            } else {
+                final int n = Integer.parseInt( args[1] ) - 1 ;
+                if( n < 0 || n >= store.size() ){
+                    System.err.println("The store holds " + store.size() + " puzzles");
+                    System.exit( 1 );
+                }
+                System.out.println( store.get( n , grid ).toString() );
+                System.out.println("Puzzle ID = " + store.getKey( n ) );
+                System.out.println("Complexity = " + store.getComplexity( n ) );
+                System.out.println("Unwinds = " + store.getUnwinds( n ) );
+            }
+            store.close();
+        } catch ( NumberFormatException e ) {
+            System.err.println("Usage: PuzzleStore file [n]");
+            System.exit( 1 );
+        } catch ( IOException e ) {
+            System.err.println( e.getMessage() );
+            System.exit( 2 );
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+/**
+ * SectorCluesFilter rejects any mask in which a row, column or box holds
+ * fewer than a given number of filled cells. The filter is a heuristic:
+ * sparse sectors are rare among puzzles with unique solutions, but they
+ * aren't impossible, so the filter trades a few puzzles for the time that
+ * would have been spent on masks that almost never succeed.
+ */
+
+public class SectorCluesFilter implements IMaskFilter {
+
+    final int boxesAcross ,
+              boxesDown ,
+              cellsInRow ,
+              minClues ;
+
+    transient int[] rowClues ,
+                    columnClues ,
+                    boxClues ;
+
+    /**
+     * Creates a filter for masks of the given dimensions.
+     * @param minClues minimum number of filled cells required in each sector
+     */
+
+    public SectorCluesFilter( int boxesAcross , int boxesDown , int minClues ){
+        this.boxesAcross = boxesAcross ;
+        this.boxesDown = boxesDown ;
+        this.minClues = minClues ;
+        cellsInRow = boxesAcross * boxesDown ;
+        rowClues = new int[cellsInRow];
+        columnClues = new int[cellsInRow];
+        boxClues = new int[cellsInRow];
+    }
+
+    /**
+     * Rejects the mask if any sector holds fewer than the minimum number of clues.
+     */
+
+    public synchronized boolean accept( boolean[][] mask ){
+        int r , c ;
+        r = 0 ;
+        while( r < cellsInRow ){
+            rowClues[r] = columnClues[r] = boxClues[r] = 0 ;
+            ++ r ;
+        }
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                if( mask[r][c] ){
+                    ++ rowClues[r];
+                    ++ columnClues[c];
+                    ++ boxClues[ r / boxesAcross * boxesAcross + c / boxesDown ];
+                }
+                ++ c ;
+            }
+            ++ r ;
+        }
+        r = 0 ;
+        while( r < cellsInRow ){
+            if( rowClues[r] < minClues || columnClues[r] < minClues || boxClues[r] < minClues ){
+                return false ;
+            }
+            ++ r ;
+        }
+        return true ;
+    }
+
+    /**
+     * Describes the filter.
+     */
+
+    public String toString(){
+        return "Fewer than " + minClues + " clues in a sector";
+    }
+}
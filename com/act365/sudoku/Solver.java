@@ -47,15 +47,23 @@ public class Solver extends Thread {
         composeSolverThreshold ,
         index ;
     
+    long timeLimit ;
+    
     Composer composer ;
     
     PrintWriter debug ;
     
+    Grid solution ;
+    
+    UniquenessChecker composeChecker ;
+    
     transient int nUnwinds ,
                   nSolns ,
                   complexity ,
                   firstDisputableMove ;
     
+    transient boolean timedOut ;
+    
     /**
      * Creates a Solver instance.
      * @param threadName thread name
@@ -133,7 +141,8 @@ public class Solver extends Thread {
     }
     
     /**
-     * Runs the solver on a thread.
+     * Runs the solver. The Composer calls run() directly from its pool
+     * threads, so the search watches the current thread for interrupts.
      */    
     
     public void run(){
@@ -145,9 +154,6 @@ public class Solver extends Thread {
             System.err.println( strategy );
             nSolns = 0 ;
         }
-        if( composer instanceof Composer ){
-            composer.solverFinished( index );
-        }
     }
     
     /**
@@ -158,6 +164,27 @@ public class Solver extends Thread {
         return nSolns ;
     }
     
+    /**
+     * Sets a wall-clock limit on each call to solve the grid. When the
+     * limit is reached, the solve returns the number of solutions found
+     * so far and isTimedOut() returns true. The unwinds, complexity and
+     * strategy counters describe the work done up to that point.
+     * @param timeLimit time limit in milliseconds (0 for no limit)
+     */
+    
+    public void setTimeLimit( long timeLimit ){
+        this.timeLimit = timeLimit ;
+    }
+    
+    /**
+     * Determines whether the last solve was abandoned because its time
+     * limit had been reached.
+     */
+    
+    public boolean isTimedOut(){
+        return timedOut ;
+    }
+    
     /**
      * Returns the number of times the tree had to be unwound 
      * in order to solve the grid.
@@ -195,13 +222,22 @@ public class Solver extends Thread {
                boolean countUnwinds ,
                int maxUnwinds ,
                int maxComplexity ) throws Exception {
-        int nSolns = 0 , nComposeSolns = 2 , count , lastWrittenMove ;
+        int nSolns = 0 , nComposeSolns = 2 , count , lastWrittenMove , status ;
         boolean stillIndisputable = true ;
         if( countUnwinds ){
             nUnwinds = complexity = 0 ;
         } else {
             firstDisputableMove = 0 ;
         }
+        timedOut = false ;
+        final long deadline = System.nanoTime() + timeLimit * 1000000 ;
+        if( strategy instanceof StrategyBase ){
+            if( timeLimit > 0 ){
+                ((StrategyBase) strategy).setDeadline( deadline );
+            } else {
+                ((StrategyBase) strategy).clearDeadline();
+            }
+        }
         try {
             strategy.setup( grid );
         } catch ( Exception e ) {
@@ -209,13 +245,26 @@ public class Solver extends Thread {
         }
         // Solve the grid.
         solveGrid:
-        while( ! isInterrupted() ){
+        while( ! Thread.currentThread().isInterrupted() ){
+            if( timeLimit > 0 && System.nanoTime() - deadline >= 0 ){
+                timedOut = true ;
+                return nSolns ;
+            }
             // Try to find a valid move.
             if( strategy.findCandidates() > 0 ){
                 strategy.selectCandidate();
                 strategy.setCandidate();
-                if( ! strategy.updateState( strategy.getBestX() , strategy.getBestY() , strategy.getBestValue() , strategy.getBestReason() , strategy.getScore() > 1 ) ){
+                status = strategy.tryUpdateState( strategy.getBestX() , strategy.getBestY() , strategy.getBestValue() , strategy.getBestReason() , strategy.getScore() > 1 );
+                if( status == IStrategy.THREAD_EXHAUSTED ){
                     return nSolns ;
+                } else if( status != IState.MOVE_ADDED ){
+                    // The move contradicts the state grid - treat it as a dead end.
+                    lastWrittenMove = strategy.getLastWrittenMove();
+                    complexity += strategy.getThreadLength() - lastWrittenMove ;
+                    if( countUnwinds && ( ++ nUnwinds == maxUnwinds || complexity >= maxComplexity ) || ! strategy.unwind( lastWrittenMove , true , true ) ){
+                        return nSolns ;
+                    }
+                    continue ;
                 }
                 if( stillIndisputable && ! countUnwinds ){
                     if( strategy.getScore() == 1 ){
@@ -226,8 +275,10 @@ public class Solver extends Thread {
                 }                
                 count = grid.countFilledCells();
                 if( composeSolver instanceof IStrategy && count >= composeSolverThreshold ){
-                    nComposeSolns = solve( composeSolver , null , 0 , 2 , false , 0 , 0 );
-                    composeSolver.reset();
+                    if( ! ( composeChecker instanceof UniquenessChecker ) || composeChecker.getStrategy() != composeSolver ){
+                        composeChecker = new UniquenessChecker( composeSolver );
+                    }
+                    nComposeSolns = composeChecker.check( grid );
                     if( nComposeSolns == 0 ){
                         nComposeSolns = 2 ;
                         // No solutions exist - that's no good.
@@ -241,6 +292,9 @@ public class Solver extends Thread {
                 }
                 if( count == grid.cellsInRow * grid.cellsInRow || nComposeSolns == 1 ){
                     // Grid has been solved.
+                    if( nSolns == 0 && solution instanceof Grid ){
+                        copySolution();
+                    }
                     if( nComposeSolns == 1 ){
                         composer.addSolution( index );
                         nComposeSolns = 2 ;
@@ -265,18 +319,25 @@ public class Solver extends Thread {
                         return nSolns ;
                     }
                 } else if( composeSolver instanceof IStrategy  && count >= composeSolverThreshold ){
-                    try {
-                        int i = 0 ;
-                        while( i < firstDisputableMove ){
-                            strategy.updateState( composeSolver.getThreadX( i ) , 
-                                                  composeSolver.getThreadY( i ) , 
-                                                  grid.data[composeSolver.getThreadX( i )][composeSolver.getThreadY( i )] , 
-                                                  null , 
-                                                  false );
-                            ++ i ;
-                        }
-                        composeSolver.reset( firstDisputableMove );
-                    } catch ( Exception e ) {
+                    // The checker clears the grid, so the forced moves are
+                    // written back to it before they are replayed.
+                    // There are none when the checker has settled the grid
+                    // from its cache, and the compose solver is left alone.
+                    final int nForcedMoves = composeChecker.getForcedMoves();
+                    if( nForcedMoves > 0 ){
+                        composeSolver.reset( nForcedMoves );
+                    }
+                    int i = 0 ;
+                    status = IState.MOVE_ADDED ;
+                    while( i < nForcedMoves && status == IState.MOVE_ADDED ){
+                        status = strategy.tryUpdateState( composeSolver.getThreadX( i ) , 
+                                                          composeSolver.getThreadY( i ) , 
+                                                          grid.data[composeSolver.getThreadX( i )][composeSolver.getThreadY( i )] , 
+                                                          null , 
+                                                          false );
+                        ++ i ;
+                    }
+                    if( status != IState.MOVE_ADDED ){
                         composeSolver.reset();
                         lastWrittenMove = strategy.getLastWrittenMove();
                         complexity += strategy.getThreadLength() - lastWrittenMove ;
@@ -298,25 +359,167 @@ public class Solver extends Thread {
         return nSolns ;
     }
     
+    /**
+     * Copies the current state of the grid into the solution grid.
+     */
+    
+    void copySolution(){
+        if( solution.cellsInRow != grid.cellsInRow ){
+            solution.resize( grid.boxesAcross , grid.boxesDown );
+        }
+        int i , j ;
+        i = 0 ;
+        while( i < grid.cellsInRow ){
+            j = 0 ;
+            while( j < grid.cellsInRow ){
+                solution.data[i][j] = grid.data[i][j];
+                ++ j ;
+            }
+            ++ i ;
+        }
+    }
+    
+    /**
+     * Solves a stream of puzzles on the current thread. A single strategy,
+     * grid and solver are used throughout, so the arrays allocated by the
+     * strategy are reused from one puzzle to the next. One line is written 
+     * for each puzzle, which contains the puzzle number, the number of 
+     * solutions found and either the first solution in single-line format 
+     * or '-' if no solution exists.
+     * @param reader source of puzzles
+     * @param output destination for results
+     * @param strategy strategy to be used to solve each puzzle
+     * @param maxSolns the maximum number of solutions to find for each puzzle (0 for no limit)
+     * @param profile whether unwinds and complexity should be appended to each line
+     * @param timeLimit time limit for each puzzle in milliseconds (0 for no limit)
+     * @param debug (optional) destination for debug info
+     * @return the number of puzzles read
+     */
+    
+    public static int solveBatch( PuzzleReader reader ,
+                                  PrintWriter output ,
+                                  IStrategy strategy ,
+                                  int maxSolns ,
+                                  boolean profile ,
+                                  long timeLimit ,
+                                  PrintStream debug ){
+        Grid grid = new Grid();
+        Solver solver = new Solver( grid , strategy , null , 0 , maxSolns , debug );
+        solver.solution = new Grid();
+        solver.timeLimit = timeLimit ;
+        int nSolns ;
+        while( true ){
+            try {
+                if( ! reader.read( grid ) ){
+                    break ;
+                }
+            } catch ( Exception e ) {
+                System.err.println("Puzzle " + reader.getNumberOfPuzzles() + ": " + e.getMessage() );
+                output.println( formatError( reader.getNumberOfPuzzles() , profile ) );
+                continue ;
+            }
+            try {
+                nSolns = solver.solve( strategy , null , 0 , maxSolns , true , 0 , Integer.MAX_VALUE );
+            } catch ( Exception e ) {
+                System.err.println("Puzzle " + reader.getNumberOfPuzzles() + ": " + e.getMessage() );
+                nSolns = 0 ;
+            }
+            output.println( formatResult( reader.getNumberOfPuzzles() , nSolns , solver , profile ) );
+            if( debug instanceof PrintStream ){
+                output.flush();
+            }
+        }
+        output.flush();
+        return reader.getNumberOfPuzzles();
+    }
+    
+    /**
+     * Formats the batch-mode result line for a puzzle. The line ends
+     * with 'timeout' when the solve was abandoned at its time limit.
+     * @param serial puzzle number
+     * @param nSolns number of solutions found
+     * @param solver solver that holds the first solution
+     * @param profile whether unwinds and complexity should be appended
+     */
+    
+    static String formatResult( int serial , int nSolns , Solver solver , boolean profile ){
+        StringBuilder sb = new StringBuilder();
+        sb.append( serial );
+        sb.append(' ');
+        sb.append( nSolns );
+        sb.append(' ');
+        sb.append( nSolns > 0 ? solver.solution.toLine() : "-" );
+        if( profile ){
+            sb.append(' ');
+            sb.append( solver.nUnwinds );
+            sb.append(' ');
+            sb.append( solver.complexity );
+        }
+        if( solver.timedOut ){
+            sb.append(" timeout");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats the batch-mode result line for a puzzle that couldn't be
+     * read, so that the output still holds a line for every puzzle.
+     * @param serial puzzle number
+     * @param profile whether unwinds and complexity should be appended
+     */
+
+    static String formatError( int serial , boolean profile ){
+        StringBuilder sb = new StringBuilder();
+        sb.append( serial );
+        sb.append(" 0 -");
+        if( profile ){
+            sb.append(" 0 0");
+        }
+        sb.append(" error");
+        return sb.toString();
+    }
+    
     /**
      * Command-line app to solve Su Doku puzzles.
-     * <br><code>Solver [-m max solutions] [-s strategy] [-v]</code>
+     * <br><code>Solver [-m max solutions] [-s strategy] [-v] [-p] [-b] [-t threads] [-u] [-a] [-d ms] [-r ms]</code>
      * <br><code>[-m max solutions]</code> stipulates the maximum number of solutions to be reported. 
      * The default is for all solutions to be reported.
      * <br><code>[-s strategy]</code> stipulates the strategy to be used. the default is Least Candidates Hybrid.
      * <br><code>[-v]</code> stipulates whether the app should execute in verbose mode. The default is no.
      * <br><code>[-p]</code> enables profiling information.
+     * <br><code>[-b]</code> stipulates batch mode, in which every puzzle on standard input
+     * is solved and a single line is written for each. Puzzles may either be written on
+     * a single line or in the usual format, separated by blank lines.
+     * <br><code>[-t threads]</code> stipulates the number of worker threads to be used in batch
+     * mode, each of which owns its own strategy. Results are written in input order. The default is 1.
+     * Verbose output is only available with a single thread.
+     * <br><code>[-u]</code> stipulates that the state grids should record their threads in undo logs
+     * rather than snapshots, which saves memory on large grids. 
+     * <br><code>[-a]</code> stipulates that Least Candidates Hybrid II should order its
+     * elimination rules by their measured yields rather than apply them in a fixed order.
+     * The solution path, and hence the output in verbose mode, may then vary from run to run.
+     * <br><code>[-d ms]</code> stipulates a wall-clock time limit for each puzzle, after which
+     * the solve is abandoned and reported as timed out. The default is no limit.
+     * <br><code>[-r ms]</code> stipulates a time limit for each application of an elimination rule
+     * by Least Candidates Hybrid II. A rule that runs out of time is treated as having made no
+     * progress, so the strategy falls back on a guess. The default is no limit.
      * <br> The puzzle will be read from standard input.  
      */
     
     public static void main( String[] args ){
         
-        final String usage = "Usage: Solver [-m max solutions] [-s strategy] [-v] [-p profile]";
+        final String usage = "Usage: Solver [-m max solutions] [-s strategy] [-v] [-p profile] [-b batch] [-t threads] [-u undo log] [-a adaptive] [-d puzzle time limit] [-r rule time limit]";
         
         boolean debug = false ,
-                profile = false ;
+                profile = false ,
+                batch = false ,
+                useUndoLog = false ,
+                adaptiveScheduling = false ;
+        
+        int i , maxSolns = 0 , nThreads = 1 ;
         
-        int i , maxSolns = 0 ;
+        long timeLimit = 0 ,
+             ruleTimeLimit = 0 ;
         
         String strategyLabel = "Least Candidates Hybrid";
         
@@ -335,6 +538,33 @@ public class Solver extends Thread {
                 strategyLabel = args[++i];
             } else if( args[i].equals("-p") ) {
                 profile = true ;
+            } else if( args[i].equals("-b") ) {
+                batch = true ;
+            } else if( args[i].equals("-u") ) {
+                useUndoLog = true ;
+            } else if( args[i].equals("-a") ) {
+                adaptiveScheduling = true ;
+            } else if( args[i].equals("-d") ){
+                try {
+                    timeLimit = Long.parseLong( args[++i] );
+                } catch ( NumberFormatException e ) {
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
+            } else if( args[i].equals("-r") ){
+                try {
+                    ruleTimeLimit = Long.parseLong( args[++i] );
+                } catch ( NumberFormatException e ) {
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
+            } else if( args[i].equals("-t") ){
+                try {
+                    nThreads = Integer.parseInt( args[++i] );
+                } catch ( NumberFormatException e ) {
+                    System.err.println( usage );
+                    System.exit( 1 );
+                }
             } else {
                 System.err.println( usage );
                 System.exit( 1 );
@@ -347,6 +577,36 @@ public class Solver extends Thread {
             System.err.println("Unsupported strategy");
             System.exit( 2 );
         }
+        if( strategy instanceof LeastCandidatesHybrid ){
+            ( (LeastCandidatesHybrid) strategy ).setRuleTimeLimit( ruleTimeLimit );
+            ( (LeastCandidatesHybrid) strategy ).setAdaptiveScheduling( adaptiveScheduling );
+        }
+        if( strategy instanceof StrategyBase ){
+            ( (StrategyBase) strategy ).setUndoLog( useUndoLog );
+        }
+        // Solve every puzzle on standard input in batch mode.
+        if( batch ){
+            long startTime = new Date().getTime();
+            PuzzleReader reader = new PuzzleReader( new InputStreamReader( System.in ) );
+            PrintWriter output = new PrintWriter( new BufferedWriter( new OutputStreamWriter( System.out ) ) );
+            int nPuzzles = 0 ;
+            if( nThreads > 1 ){
+                try {
+                    BatchSolver batchSolver = new BatchSolver( reader , output , strategyLabel , maxSolns , nThreads , profile , timeLimit );
+                    batchSolver.setRuleTimeLimit( ruleTimeLimit );
+                    batchSolver.setUndoLog( useUndoLog );
+                    batchSolver.setAdaptiveScheduling( adaptiveScheduling );
+                    nPuzzles = batchSolver.solve();
+                } catch ( InterruptedException e ) {
+                    System.err.println("Solver interrupted");
+                }
+            } else {
+                nPuzzles = solveBatch( reader , output , strategy , maxSolns , profile , timeLimit , debug ? System.out : null );
+            }
+            double solveTime = ( new Date().getTime() - startTime )/ 1000. ;
+            System.err.println( nPuzzles + " puzzles solved in " + new DecimalFormat("#0.000").format( solveTime )+ "s");
+            return ;
+        }
         // Read the grid from standard input. A blank line will terminate
         // the read.
         Grid grid = new Grid();
@@ -370,6 +630,7 @@ public class Solver extends Thread {
         long startTime ;
         double solveTime ;
         Solver solver = new Solver( grid , strategy , null , 0 , maxSolns , debug ? System.out : null );
+        solver.timeLimit = timeLimit ;
         startTime = new Date().getTime();
         solver.start();
         try {
@@ -383,10 +644,14 @@ public class Solver extends Thread {
             System.out.print('s');
         }
         System.out.print(" found in ");
-        System.out.println( new DecimalFormat("#0.000").format( solveTime )+ "s");
+        System.out.print( new DecimalFormat("#0.000").format( solveTime )+ "s");
+        System.out.println( solver.isTimedOut() ? " - timed out" : "");
         if( profile ){
             System.out.println("Unwinds: " + solver.nUnwinds );
             System.out.println("Complexity: " + solver.complexity );
+            if( strategy instanceof StrategyBase ){
+                System.out.println("Thread footprint: " + ((StrategyBase) strategy ).getThreadFootprint() + " bytes");
+            }
             if( strategy instanceof LeastCandidatesHybrid ){
                 LeastCandidatesHybrid lch = (LeastCandidatesHybrid) strategy ;
                 if( lch.state instanceof IState ){
@@ -397,6 +662,11 @@ public class Solver extends Thread {
                     System.out.println("Single-Valued Chains: " + lch.singleValuedChainsCalls + " calls " + lch.singleValuedChainsEliminations + " eliminations");
                     System.out.println("Many-Valued Chains: " + lch.manyValuedChainsCalls + " calls " + lch.manyValuedChainsEliminations + " eliminations");
                     System.out.println("Nishio: " + lch.nishioCalls + " calls " + lch.nishioEliminations + " eliminations");
+                    System.out.println("Capacity exhausted: " + lch.capacityExhausted + " times");
+                    System.out.println("Rule timeouts: " + lch.ruleTimeouts );
+                    if( lch.adaptiveScheduling ){
+                        System.out.println("Rule schedule: " + lch.ruleSchedule() );
+                    }
                 }
             }
         }
@@ -41,7 +41,8 @@ public class Strategy {
                             LEAST_CANDIDATES_HYBRID_II = 7 ,
                             RANDOM_LEAST_CANDIDATES_HYBRID_II = 8 ,
                             MOST_CANDIDATES = 9 ,
-                            RANDOM_MOST_CANDIDATES = 10 ;
+                            RANDOM_MOST_CANDIDATES = 10 ,
+                            DANCING_LINKS = 11 ;
 
 	public final static String[] strategyNames = new String[] { "First Available", 
                                                                 "Least Candidates Cell" ,
@@ -53,7 +54,8 @@ public class Strategy {
                                                                 "Least Candidates Hybrid II" ,
                                                                 "Random Least Candidates Hybrid II" ,
                                                                 "Most Candidates" ,
-                                                                "Random Most Candidates" };
+                                                                "Random Most Candidates" ,
+                                                                "Dancing Links" };
     
     /**
      * Creates a new strategy instance to solve the given grid.
@@ -94,6 +96,9 @@ public class Strategy {
             
             case RANDOM_MOST_CANDIDATES :
             return new MostCandidates( null , true );
+            
+            case DANCING_LINKS :
+            return new DancingLinks( false , explain );
                       
             default:
             return null ;
@@ -93,6 +93,13 @@ public abstract class StrategyBase {
     
     transient protected boolean resize ;
     
+    // The time, in the units of System.nanoTime(), by which the current
+    // solve should finish, if any.
+    
+    transient protected boolean hasDeadline ;
+    
+    transient protected long deadline ;
+    
     /**
      * Creates a new base class with an optional random number generator.
      */
@@ -141,7 +148,12 @@ public abstract class StrategyBase {
         if( explain ){
             i = 0 ;
             while( i < grid.cellsInRow * grid.cellsInRow ){
-                reasons[i++] = new StringBuilder();
+                if( reasons[i] instanceof StringBuilder ){
+                    reasons[i].delete( 0 , reasons[i].length() );
+                } else {
+                    reasons[i] = new StringBuilder();
+                }
+                ++ i ;
             }
         }        
         if( state instanceof IState ){
@@ -196,9 +208,23 @@ public abstract class StrategyBase {
      */    
     
     public boolean updateState( int x , int y , int value , String reason , boolean writeState ) throws Exception {
-        if( nMoves == -1 ){
+        final int status = tryUpdateState( x , y , value , reason , writeState );
+        if( status == IStrategy.THREAD_EXHAUSTED ){
             return false ;
         }
+        MoveException.check( status , x , y , value - 1 );
+        return true ;
+    }
+
+    /**
+     * Updates state variables without throwing an exception.
+     * @see com.act365.sudoku.IStrategy#tryUpdateState(int,int,int,String,boolean)
+     */    
+    
+    public int tryUpdateState( int x , int y , int value , String reason , boolean writeState ) {
+        if( nMoves == -1 ){
+            return IStrategy.THREAD_EXHAUSTED ;
+        }
         // Store current state variables on thread.
         if( writeState ){
             state.pushState( nMoves );
@@ -215,8 +241,7 @@ public abstract class StrategyBase {
         }
         ++ nMoves ;
         // Update state variables
-        state.addMove( x , y , value - 1 );
-        return true ;
+        return state.tryAddMove( x , y , value - 1 );
     }
 
     /**
@@ -413,6 +438,53 @@ public abstract class StrategyBase {
         return score ;
     }
     
+    /**
+     * Sets the time by which the current solve should finish. A strategy
+     * that may spend a long time over a single move checks the deadline
+     * as it goes and gives up on the move once the deadline has passed.
+     * @param deadline deadline in the units of System.nanoTime()
+     */
+    
+    public void setDeadline( long deadline ){
+        this.deadline = deadline ;
+        hasDeadline = true ;
+    }
+    
+    /**
+     * Removes the deadline.
+     */
+    
+    public void clearDeadline(){
+        hasDeadline = false ;
+    }
+    
+    /**
+     * Chooses whether the state grids should store the thread as an undo
+     * log rather than as snapshots. Strategies whose state grids cannot use
+     * an undo log ignore the request.
+     * @param useUndoLog whether an undo log should be used
+     */
+    
+    public void setUndoLog( boolean useUndoLog ){
+    }
+    
+    /**
+     * Determines whether the deadline, if any, has passed.
+     */
+    
+    public boolean isPastDeadline(){
+        return hasDeadline && System.nanoTime() - deadline >= 0 ;
+    }
+    
+    /**
+     * Returns the number of bytes that have been allocated in order
+     * to store the state thread.
+     */
+    
+    public long getThreadFootprint(){
+        return state instanceof IState ? state.getThreadFootprint() : 0 ;
+    }
+    
     /**
      * Returns the number of moves that had been made at the
      * last point where two alternative moves existed.
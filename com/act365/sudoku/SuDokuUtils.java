@@ -367,6 +367,9 @@ public class SuDokuUtils {
                 } else if( c >= 'a' && c <= 'z' ){
                     datum = (byte)( c - 'a' + 10 );
                     break ;
+                } else if( c < '0' || c > '9' ){
+                    // Any other character denotes an empty cell.
+                    break ;
                 }
             }
             try {
@@ -0,0 +1,360 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+import java.util.* ;
+
+/**
+ * UnavoidableSets holds a set of unavoidable sets for a solution grid.
+ * An unavoidable set is a set of cells whose values may be rearranged to
+ * form a second valid solution, so any puzzle with a unique solution
+ * must have a clue in each one. Two families of sets are found, both of
+ * which are cheap to enumerate:
+ * <ul>
+ * <li>for each pair of values, the cells that hold one value or the other
+ * fall into cycles that are linked by the rows, columns and boxes, and
+ * the values may be swapped around any one cycle.
+ * <li>for each pair of rows in a band (or columns in a stack), the cells
+ * fall into cycles of columns (or rows) across which the values may be
+ * exchanged between the two lines.
+ * </ul>
+ * Each set is minimal within its family and is held as a bitmask over
+ * the cells, in reading order. The sets are ordered from smallest to
+ * largest. (The unavoidable rectangles, i.e. the sets of four cells,
+ * belong to both families and are held twice.) A grid that agrees with
+ * the solution but misses one of the sets has more than one solution,
+ * which may be established with a few bit operations per set rather
+ * than a search.
+ */
+
+public class UnavoidableSets {
+
+    transient int boxesAcross ,
+                  boxesDown ,
+                  cellsInRow ,
+                  nWords ,
+                  nSets ;
+
+    transient byte[][] solution ;
+
+    transient long[][] sets ;
+
+    transient long[] clues ;
+
+    transient int[][] rowPosition ,
+                      columnPosition ,
+                      boxPosition ;
+
+    transient int[] stack ;
+
+    transient boolean[] visited ;
+
+    transient boolean stale ;
+
+    /**
+     * Creates an empty collection of sets.
+     */
+
+    public UnavoidableSets(){
+        solution = new byte[0][0];
+        sets = new long[0][];
+        clues = new long[0];
+    }
+
+    /**
+     * Sets the solution grid, which should be complete and valid. The
+     * unavoidable sets are only found when they are first needed, so a
+     * solution that is replaced before it is used costs no more than a
+     * copy.
+     */
+
+    public void setup( Grid grid ){
+        if( boxesAcross != grid.boxesAcross || boxesDown != grid.boxesDown ){
+            boxesAcross = grid.boxesAcross ;
+            boxesDown = grid.boxesDown ;
+            cellsInRow = grid.cellsInRow ;
+            nWords = ( cellsInRow * cellsInRow + 63 )/ 64 ;
+            solution = new byte[cellsInRow][cellsInRow];
+            clues = new long[nWords];
+            rowPosition = new int[cellsInRow][cellsInRow+1];
+            columnPosition = new int[cellsInRow][cellsInRow+1];
+            boxPosition = new int[cellsInRow][cellsInRow+1];
+            stack = new int[cellsInRow*cellsInRow];
+            visited = new boolean[cellsInRow*cellsInRow];
+        }
+        int r = 0 ;
+        while( r < cellsInRow ){
+            System.arraycopy( grid.data[r] , 0 , solution[r] , 0 , cellsInRow );
+            ++ r ;
+        }
+        nSets = 0 ;
+        stale = true ;
+    }
+
+    /**
+     * Finds the unavoidable sets for the current solution.
+     */
+
+    void findSets(){
+        stale = false ;
+        Vector<long[]> found = new Vector<long[]>();
+        findValueCycles( found );
+        findLineCycles( found , false );
+        findLineCycles( found , true );
+        // The smallest sets are the likeliest to be missed, so they go first.
+        sets = found.toArray( new long[found.size()][] );
+        nSets = sets.length ;
+        Arrays.sort( sets , new Comparator<long[]>(){
+            public int compare( long[] a , long[] b ){
+                return count( a ) - count( b );
+            }
+        });
+    }
+
+    /**
+     * Finds the cycles of cells that hold one or other of each pair of
+     * values. The cell that holds the first value in each row, column and
+     * box is linked to the cell that holds the second value, and each
+     * connected set of cells forms a cycle around which the values may
+     * be swapped.
+     */
+
+    void findValueCycles( Vector<long[]> found ){
+        int r , c , v1 , v2 , cell , i ;
+        long[] set ;
+        // Record the position of each value in each sector.
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                rowPosition[r][solution[r][c]] = r * cellsInRow + c ;
+                columnPosition[c][solution[r][c]] = r * cellsInRow + c ;
+                boxPosition[ r / boxesAcross * boxesAcross + c / boxesDown ][solution[r][c]] = r * cellsInRow + c ;
+                ++ c ;
+            }
+            ++ r ;
+        }
+        v1 = 1 ;
+        while( v1 < cellsInRow ){
+            v2 = v1 + 1 ;
+            while( v2 <= cellsInRow ){
+                i = 0 ;
+                while( i < cellsInRow ){
+                    visited[rowPosition[i][v1]] = visited[rowPosition[i][v2]] = false ;
+                    ++ i ;
+                }
+                i = 0 ;
+                while( i < cellsInRow ){
+                    if( ! visited[rowPosition[i][v1]] ){
+                        // Grow the cycle from the cell that holds v1 in row i.
+                        set = new long[nWords];
+                        closeValueCycle( set , rowPosition[i][v1] , v1 , v2 );
+                        found.addElement( set );
+                    }
+                    ++ i ;
+                }
+                ++ v2 ;
+            }
+            ++ v1 ;
+        }
+    }
+
+    /**
+     * Grows a set of cells that hold v1 or v2 from the given cell until
+     * each row, column and box that contains one of the cells contains both.
+     */
+
+    void closeValueCycle( long[] set , int cell , int v1 , int v2 ){
+        int nStacked = 0 , other , r , c , v , i ;
+        visited[cell] = true ;
+        stack[nStacked++] = cell ;
+        while( nStacked > 0 ){
+            cell = stack[--nStacked];
+            set[cell/64] |= 1L << ( cell % 64 );
+            r = cell / cellsInRow ;
+            c = cell % cellsInRow ;
+            v = solution[r][c] == v1 ? v2 : v1 ;
+            i = 0 ;
+            while( i < 3 ){
+                other = i == 0 ? rowPosition[r][v] : i == 1 ? columnPosition[c][v] : boxPosition[ r / boxesAcross * boxesAcross + c / boxesDown ][v] ;
+                if( ! visited[other] ){
+                    visited[other] = true ;
+                    stack[nStacked++] = other ;
+                }
+                ++ i ;
+            }
+        }
+    }
+
+    /**
+     * Finds the cycles of columns across which the values in two rows of
+     * the same band may be exchanged or, when transposed, the cycles of
+     * rows for two columns of the same stack.
+     */
+
+    void findLineCycles( Vector<long[]> found , boolean transposed ){
+        final int lineLength = transposed ? boxesDown : boxesAcross ;
+        final int[] position = new int[cellsInRow+1];
+        final boolean[] visited = new boolean[cellsInRow];
+        int line1 , line2 , i , j , cell ;
+        long[] set ;
+        line1 = 0 ;
+        while( line1 < cellsInRow ){
+            line2 = line1 + 1 ;
+            while( line2 < cellsInRow && line2 / lineLength == line1 / lineLength ){
+                i = 0 ;
+                while( i < cellsInRow ){
+                    position[ transposed ? solution[i][line2] : solution[line2][i] ] = i ;
+                    visited[i] = false ;
+                    ++ i ;
+                }
+                i = 0 ;
+                while( i < cellsInRow ){
+                    if( ! visited[i] ){
+                        set = new long[nWords];
+                        j = i ;
+                        while( ! visited[j] ){
+                            visited[j] = true ;
+                            cell = transposed ? j * cellsInRow + line1 : line1 * cellsInRow + j ;
+                            set[cell/64] |= 1L << ( cell % 64 );
+                            cell = transposed ? j * cellsInRow + line2 : line2 * cellsInRow + j ;
+                            set[cell/64] |= 1L << ( cell % 64 );
+                            j = position[ transposed ? solution[j][line1] : solution[line1][j] ];
+                        }
+                        found.addElement( set );
+                    }
+                    ++ i ;
+                }
+                ++ line2 ;
+            }
+            ++ line1 ;
+        }
+    }
+
+    /**
+     * Returns the number of cells in a set.
+     */
+
+    static int count( long[] set ){
+        int n = 0 , i = 0 ;
+        while( i < set.length ){
+            n += Long.bitCount( set[i++] );
+        }
+        return n ;
+    }
+
+    /**
+     * Returns the number of unavoidable sets held.
+     */
+
+    public int size(){
+        if( stale ){
+            findSets();
+        }
+        return nSets ;
+    }
+
+    /**
+     * Determines whether the given grid has been shown to have more than
+     * one solution, i.e. whether each of its clues agrees with the solution
+     * and at least one unavoidable set holds no clue. A return value of
+     * false establishes nothing.
+     */
+
+    public boolean provesMultipleSolutions( Grid grid ){
+        if( grid.boxesAcross != boxesAcross || grid.boxesDown != boxesDown ){
+            return false ;
+        }
+        int r , c , cell ;
+        Arrays.fill( clues , 0 );
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                if( grid.data[r][c] != 0 ){
+                    if( grid.data[r][c] != solution[r][c] ){
+                        return false ;
+                    }
+                    cell = r * cellsInRow + c ;
+                    clues[cell/64] |= 1L << ( cell % 64 );
+                }
+                ++ c ;
+            }
+            ++ r ;
+        }
+        if( stale ){
+            findSets();
+        }
+        return ! hitsAll( clues );
+    }
+
+    /**
+     * Determines whether a mask would hit each unavoidable set, i.e.
+     * whether the puzzle formed from the solution by the mask might have
+     * a unique solution.
+     */
+
+    public boolean hitsAll( boolean[][] mask ){
+        int r , c , cell ;
+        Arrays.fill( clues , 0 );
+        r = 0 ;
+        while( r < cellsInRow ){
+            c = 0 ;
+            while( c < cellsInRow ){
+                if( mask[r][c] ){
+                    cell = r * cellsInRow + c ;
+                    clues[cell/64] |= 1L << ( cell % 64 );
+                }
+                ++ c ;
+            }
+            ++ r ;
+        }
+        if( stale ){
+            findSets();
+        }
+        return hitsAll( clues );
+    }
+
+    /**
+     * Determines whether a set of clues, held as a bitmask, hits each
+     * unavoidable set.
+     */
+
+    boolean hitsAll( long[] clues ){
+        int i = 0 , j ;
+        while( i < nSets ){
+            j = 0 ;
+            while( j < nWords && ( sets[i][j] & clues[j] ) == 0 ){
+                ++ j ;
+            }
+            if( j == nWords ){
+                return false ;
+            }
+            ++ i ;
+        }
+        return true ;
+    }
+}
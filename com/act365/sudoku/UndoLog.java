@@ -0,0 +1,113 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+/**
+ * An UndoLog records the individual changes made to a state grid so
+ * that they can be reversed when the thread is unwound. It is an
+ * alternative to the snapshots written by <code>pushState()</code>:
+ * a push merely notes the current length of the log and a pop undoes
+ * the changes that have been recorded since. Each state type decides
+ * how to encode the location of a change as an integer.
+ */
+
+public class UndoLog {
+
+    int[] locations ;
+
+    long[] oldValues ;
+
+    int[] marks ;
+
+    transient int size ,
+                  maxSize ;
+
+    /**
+     * Creates an empty UndoLog.
+     */
+
+    public UndoLog(){
+        locations = new int[256];
+        oldValues = new long[256];
+        marks = new int[0];
+    }
+
+    /**
+     * Empties the log and ensures that it can hold marks for a thread
+     * of the given length.
+     */
+
+    public void setup( int maxMoves ){
+        if( marks.length < maxMoves ){
+            marks = new int[maxMoves];
+        }
+        size = 0 ;
+    }
+
+    /**
+     * Notes the current length of the log against the given thread position.
+     */
+
+    public void mark( int nMoves ){
+        marks[nMoves] = size ;
+    }
+
+    /**
+     * Returns the length of the log when the given thread position was marked.
+     */
+
+    public int getMark( int nMoves ){
+        return marks[nMoves];
+    }
+
+    /**
+     * Records the value held at the given location before it is changed.
+     */
+
+    public void record( int location , long oldValue ){
+        if( size == locations.length ){
+            int[] newLocations = new int[2*size];
+            long[] newOldValues = new long[2*size];
+            System.arraycopy( locations , 0 , newLocations , 0 , size );
+            System.arraycopy( oldValues , 0 , newOldValues , 0 , size );
+            locations = newLocations ;
+            oldValues = newOldValues ;
+        }
+        locations[size] = location ;
+        oldValues[size] = oldValue ;
+        if( ++ size > maxSize ){
+            maxSize = size ;
+        }
+    }
+
+    /**
+     * Returns the greatest number of changes held by the log at any one time.
+     */
+
+    public int getMaxSize(){
+        return maxSize ;
+    }
+}
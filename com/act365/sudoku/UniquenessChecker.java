@@ -0,0 +1,191 @@
+/*
+ * Su Doku Solver
+ * 
+ * Copyright (C) act365.com October 2026
+ * 
+ * Web site: http://act365.com/sudoku
+ * E-mail: developers@act365.com
+ * 
+ * The Su Doku Solver solves Su Doku problems - see http://www.sudoku.com.
+ * 
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the Free 
+ * Software Foundation; either version 2 of the License, or (at your option) 
+ * any later version.
+ *  
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General 
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with 
+ * this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package com.act365.sudoku;
+
+/**
+ * A UniquenessChecker establishes whether a grid has no solutions,
+ * a unique solution or multiple solutions. The search stops as soon as
+ * a second solution is found. The checker runs on the calling thread and
+ * owns its strategy, so it may be reused for any number of grids, though
+ * not by several threads at once. The default strategy is Dancing Links,
+ * which carries no reasoning and only reallocates its matrix when the
+ * grid is resized.
+ */
+
+public class UniquenessChecker {
+
+    public final static int NO_SOLUTION = 0 ,
+                            UNIQUE_SOLUTION = 1 ,
+                            MULTIPLE_SOLUTIONS = 2 ;
+
+    IStrategy strategy ;
+
+    Solver solver ;
+
+    UnavoidableSets unavoidableSets ;
+
+    Grid lastSolution ;
+
+    transient int nChecks ,
+                  nSettledByUnavoidableSets ;
+
+    /**
+     * Creates a UniquenessChecker that uses the Dancing Links strategy.
+     */
+
+    public UniquenessChecker(){
+        this( new DancingLinks( false , false ) );
+    }
+
+    /**
+     * Creates a UniquenessChecker that uses the given strategy.
+     * @param strategy strategy to be used to search for solutions
+     */
+
+    public UniquenessChecker( IStrategy strategy ){
+        this.strategy = strategy ;
+        solver = new Solver( null , strategy , null , 0 , 2 , null );
+    }
+
+    /**
+     * Directs the checker to keep the unavoidable sets of the first
+     * solution found by the most recent search that found more than one.
+     * A subsequent grid that agrees with that solution but misses one of
+     * its unavoidable sets is reported to have multiple solutions without
+     * a search, in which case there are no forced moves. The cache pays
+     * when the checker is called on a sequence of grids that grow from
+     * one another, as they do when a puzzle is composed.
+     * @param enabled whether the cache should be kept
+     */
+
+    public void setUnavoidableSetCache( boolean enabled ){
+        if( ! enabled ){
+            unavoidableSets = null ;
+            lastSolution = null ;
+        } else if( ! ( unavoidableSets instanceof UnavoidableSets ) ){
+            unavoidableSets = new UnavoidableSets();
+            lastSolution = new Grid();
+        }
+    }
+
+    /**
+     * Returns the number of checks made.
+     */
+
+    public int getChecks(){
+        return nChecks ;
+    }
+
+    /**
+     * Returns the number of checks that were settled by the unavoidable
+     * set cache without a search.
+     */
+
+    public int getChecksSettledByUnavoidableSets(){
+        return nSettledByUnavoidableSets ;
+    }
+
+    /**
+     * Determines how many solutions the grid has. The grid is restored
+     * to its original state before the call returns.
+     * @return NO_SOLUTION, UNIQUE_SOLUTION or MULTIPLE_SOLUTIONS
+     */
+
+    public int check( Grid grid ){
+        return check( grid , null );
+    }
+
+    /**
+     * Determines how many solutions the grid has and copies the first
+     * solution to be found into the given grid, which will be resized
+     * if necessary. The grid is restored to its original state before
+     * the call returns.
+     * @param solution (optional) destination for the first solution
+     * @return NO_SOLUTION, UNIQUE_SOLUTION or MULTIPLE_SOLUTIONS
+     */
+
+    public int check( Grid grid , Grid solution ){
+        int nSolns ;
+        ++ nChecks ;
+        if( unavoidableSets instanceof UnavoidableSets && unavoidableSets.provesMultipleSolutions( grid ) ){
+            ++ nSettledByUnavoidableSets ;
+            solver.firstDisputableMove = 0 ;
+            if( solution instanceof Grid ){
+                copy( lastSolution , solution );
+            }
+            return MULTIPLE_SOLUTIONS ;
+        }
+        solver.grid = grid ;
+        solver.solution = solution instanceof Grid || ! ( unavoidableSets instanceof UnavoidableSets ) ? solution : lastSolution ;
+        try {
+            nSolns = solver.solve( strategy , null , 0 , 2 , false , 0 , 0 );
+        } catch ( Exception e ) {
+            nSolns = NO_SOLUTION ;
+        }
+        strategy.reset();
+        if( nSolns == MULTIPLE_SOLUTIONS && unavoidableSets instanceof UnavoidableSets ){
+            if( solver.solution != lastSolution ){
+                copy( solver.solution , lastSolution );
+            }
+            unavoidableSets.setup( lastSolution );
+        }
+        solver.solution = null ;
+        return nSolns ;
+    }
+
+    /**
+     * Copies one grid into another, which will be resized if necessary.
+     */
+
+    static void copy( Grid source , Grid destination ){
+        if( destination.boxesAcross != source.boxesAcross || destination.boxesDown != source.boxesDown ){
+            destination.resize( source.boxesAcross , source.boxesDown );
+        }
+        int r = 0 ;
+        while( r < source.cellsInRow ){
+            System.arraycopy( source.data[r] , 0 , destination.data[r] , 0 , source.cellsInRow );
+            ++ r ;
+        }
+    }
+
+    /**
+     * Returns the number of moves at the start of the most recent search
+     * that were made without choice, i.e. for which the strategy found a
+     * single candidate.
+     */
+
+    public int getForcedMoves(){
+        return solver.firstDisputableMove ;
+    }
+
+    /**
+     * Returns the strategy used by the checker.
+     */
+
+    public IStrategy getStrategy(){
+        return strategy ;
+    }
+}
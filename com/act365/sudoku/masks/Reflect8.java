@@ -81,7 +81,7 @@ public class Reflect8 extends MaskFactory {
         if( nSectors == 4 ){
             return 8 * sectorBalls[0] + 4 *( sectorBalls[1] + sectorBalls[2] ) + sectorBalls[3] == filledCells ;   
         } else {
-            return 4 * sectorBalls[0] + 4 * sectorBalls[1] == filledCells ;   
+            return 8 * sectorBalls[0] + 4 * sectorBalls[1] == filledCells ;   
         }
     }
     
@@ -99,7 +99,7 @@ public class Reflect8 extends MaskFactory {
         i = j = k = 0 ;
         while( k < sectorBalls[0] ){
             j += g[0][k++];
-            while( j > i ){
+            while( j >= i ){
                 j -= i ++ ;
             }
             mask[i][j] = mask[j][i] =
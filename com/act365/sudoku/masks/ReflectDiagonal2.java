@@ -76,7 +76,7 @@ public class ReflectDiagonal2 extends MaskFactory {
         i = j = k = 0 ;
         while( k < sectorBalls[0] ){
             j += g[0][k++];
-            while( j > i ){
+            while( j >= i ){
                 j -= i ++ ;
             }
             mask[i][j] = mask[j][i] = true ; 
@@ -61,6 +61,9 @@ public class ReflectDiagonal4 extends MaskFactory {
             sectorMax[0]= ( filledCells - filledCells % 2 )/ 4 ;
             sectorSlots[0] = ( cellsInRow - 1 )*( cellsInRow - 1 )/ 4 ; 
         } else {
+            if( filledCells % 2 == 1 ){
+                ++ filledCells ;
+            }
             sectorMin[2] = sectorMin[1] = 0 ;
             sectorMax[2] = sectorMax[1] = 
             sectorSlots[2] = sectorSlots[1] = cellsInRow / 2 ;
@@ -94,11 +97,9 @@ public class ReflectDiagonal4 extends MaskFactory {
         i = j = k = 0 ;
         while( k < sectorBalls[0] ){
             j += g[0][k++];
-            while( j > i && 2 * i <= cellsInRow ){
-                j -= i ++ ;
-            }
-            while( j > cellsInRow - i ){
-                j -= i -- ;
+            while( j >= Math.min( i , cellsInRow - 1 - i ) ){
+                j -= Math.min( i , cellsInRow - 1 - i );
+                ++ i ;
             }
             mask[i][j] = mask[j][i] = mask[cellsInRow-1-i][cellsInRow-1-j] = mask[cellsInRow-1-j][cellsInRow-1-i] = true ; 
             ++ j ; 